@@ -0,0 +1,58 @@
+import me.kcra.tinyprotocol.utils.ReflectType
+
+plugins {
+    id("me.kcra.tinyprotocol")
+    id("me.champeau.jmh") version "0.6.8"
+}
+
+// the benchmarked Reflect implementation, e.g. -PreflectType=NARCISSUS
+val reflectType: ReflectType = ReflectType.valueOf((findProperty("reflectType") ?: "ZERODEP").toString())
+
+repositories {
+    mavenCentral()
+}
+
+protocol {
+    // explicit protocol numbers and local mappings, the benchmarks don't need network access
+    version("1.0", 1)
+    version("1.1", 2)
+    mappings("1.0", file("mappings/1.0.txt"))
+    mappings("1.1", file("mappings/1.1.txt"))
+    packet(
+        "net/minecraft/network/protocol/game/ClientboundWidePacket",
+        "net/minecraft/network/protocol/game/ClientboundPrimitivePacket",
+        "net/minecraft/network/protocol/game/ClientboundFinalPacket",
+        "net/minecraft/network/protocol/game/ClientboundLimitedPacket"
+    )
+    packageName = "me.kcra.tinyprotocol.benchmarks.packets"
+    utilsPackageName = "me.kcra.tinyprotocol.benchmarks.utils"
+    // the wrappers are generated into the build directory and compiled with the main source set,
+    // the sources only hold the fake NMS classes and the benchmarks
+    sourceSet = "main"
+    useBuildDirectory = true
+    reflect {
+        type = reflectType
+    }
+}
+
+dependencies {
+    // the generated wrappers are added to the main source set, next to the fake NMS classes
+    implementation("io.github.toolfactory:narcissus:1.0.7")
+    implementation("org.objenesis:objenesis:3.2")
+}
+
+tasks.withType<JavaCompile> {
+    options.encoding = "UTF-8"
+}
+
+jmh {
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    warmup.set("2s")
+    timeOnIteration.set("2s")
+    // allocation rates per operation
+    profilers.add("gc")
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/${reflectType.name.lowercase()}.json"))
+}
@@ -0,0 +1,8 @@
+#!/bin/sh
+# Runs the benchmarks for every Reflect implementation,
+# the results are written to build/results/jmh/<implementation>.json.
+set -e
+cd "$(dirname "$0")"
+for type in ${TYPES:-ZERODEP NARCISSUS OBJENESIS METHOD_HANDLES COMPILED}; do
+    ../gradlew --project-dir . jmh -PreflectType="$type" "$@"
+done
@@ -0,0 +1,9 @@
+pluginManagement {
+    // builds the plugin from the parent directory
+    includeBuild("..")
+    repositories {
+        gradlePluginPortal()
+    }
+}
+
+rootProject.name = "tinyprotocol-benchmarks"
@@ -0,0 +1,114 @@
+/*
+ * This file is part of tinyprotocol2, licensed under the MIT License.
+ *
+ * Copyright (c) 2022 Matouš Kučera
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.kcra.tinyprotocol.benchmarks;
+
+import me.kcra.tinyprotocol.benchmarks.packets.ClientboundFinalPacket;
+import me.kcra.tinyprotocol.benchmarks.packets.ClientboundLimitedPacket;
+import me.kcra.tinyprotocol.benchmarks.packets.ClientboundPrimitivePacket;
+import me.kcra.tinyprotocol.benchmarks.packets.ClientboundWidePacket;
+import me.kcra.tinyprotocol.benchmarks.utils.Packet;
+import nms.FriendlyByteBuf;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion benchmarks of the generated packet wrappers.
+ * <p>
+ * The Reflect implementation is selected at build time, see the run.sh script.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConversionBenchmark {
+    /**
+     * wide - 16 fields of mixed types,
+     * primitive - primitive fields only,
+     * final - final fields only,
+     * limited - fields limited to the second version
+     */
+    @Param({"wide", "primitive", "final", "limited"})
+    public String packet;
+
+    @Param({"1", "2"})
+    public int protocol;
+
+    private Packet wrapper;
+    private Object raw;
+    private FriendlyByteBuf buf;
+
+    @Setup
+    public void setup() {
+        wrapper = createPacket(packet);
+        raw = wrapper.toNMS(protocol);
+        buf = new FriendlyByteBuf(1024);
+        wrapper.write(buf, protocol);
+    }
+
+    @Benchmark
+    public Object toNMS() {
+        return wrapper.toNMS(protocol);
+    }
+
+    @Benchmark
+    public Packet fromNMS() {
+        wrapper.fromNMS(raw, protocol);
+        return wrapper;
+    }
+
+    @Benchmark
+    public Packet read() {
+        buf.resetReaderIndex();
+        wrapper.read(buf, protocol);
+        return wrapper;
+    }
+
+    @Benchmark
+    public FriendlyByteBuf write() {
+        buf.clear();
+        wrapper.write(buf, protocol);
+        return buf;
+    }
+
+    private static Packet createPacket(String name) {
+        final UUID uuid = new UUID(0x1234L, 0x5678L);
+        switch (name) {
+            case "wide":
+                return new ClientboundWidePacket(
+                        1, uuid, "name", 1.5, 64, -3.25, 90f, 45f, 24000L,
+                        (short) 7, (byte) 3, true, "tag", 42, 0xCAFEL, false
+                );
+            case "primitive":
+                return new ClientboundPrimitivePacket(1, 1.5, 64, -3.25, 90f, 45f, 24000L, true);
+            case "final":
+                return new ClientboundFinalPacket(1, uuid, 1.5, 64, -3.25, (byte) 64, (byte) 32, true);
+            case "limited":
+                return new ClientboundLimitedPacket(1, "name", 24000L, true);
+            default:
+                throw new IllegalArgumentException("Unknown packet " + name);
+        }
+    }
+}
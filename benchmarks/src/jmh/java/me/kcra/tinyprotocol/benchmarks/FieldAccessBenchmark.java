@@ -0,0 +1,111 @@
+/*
+ * This file is part of tinyprotocol2, licensed under the MIT License.
+ *
+ * Copyright (c) 2022 Matouš Kučera
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.kcra.tinyprotocol.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Field access through method handles, kept in a static final constant or in a per-version binding.
+ * <p>
+ * The METHOD_HANDLES wrappers keep their handles in bindings looked up by protocol version,
+ * which the JIT can't constant-fold like a static final handle.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FieldAccessBenchmark {
+    private static final MethodHandle GETTER;
+    private static final MethodHandle SETTER;
+    // [version index, binding], like the generated BINDINGS
+    private static final Binding[] BINDINGS;
+
+    static {
+        try {
+            final MethodHandles.Lookup lookup = MethodHandles.lookup();
+            GETTER = lookup.findGetter(Target.class, "value", int.class).asType(MethodType.methodType(int.class, Object.class));
+            SETTER = lookup.findSetter(Target.class, "value", int.class).asType(MethodType.methodType(void.class, Object.class, int.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+        BINDINGS = new Binding[] {new Binding(GETTER, SETTER), new Binding(GETTER, SETTER)};
+    }
+
+    @Param({"0", "1"})
+    public int index;
+
+    private final Target target = new Target();
+    private int value = 42;
+
+    @Benchmark
+    public int directGet() {
+        return target.value;
+    }
+
+    @Benchmark
+    public int staticFinalGet() throws Throwable {
+        return (int) GETTER.invokeExact((Object) target);
+    }
+
+    @Benchmark
+    public int bindingGet() throws Throwable {
+        return (int) BINDINGS[index].getter.invokeExact((Object) target);
+    }
+
+    @Benchmark
+    public Target directSet() {
+        target.value = value;
+        return target;
+    }
+
+    @Benchmark
+    public Target staticFinalSet() throws Throwable {
+        SETTER.invokeExact((Object) target, value);
+        return target;
+    }
+
+    @Benchmark
+    public Target bindingSet() throws Throwable {
+        BINDINGS[index].setter.invokeExact((Object) target, value);
+        return target;
+    }
+
+    public static final class Target {
+        public int value;
+    }
+
+    private static final class Binding {
+        final MethodHandle getter;
+        final MethodHandle setter;
+
+        Binding(MethodHandle getter, MethodHandle setter) {
+            this.getter = getter;
+            this.setter = setter;
+        }
+    }
+}
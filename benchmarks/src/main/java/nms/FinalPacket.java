@@ -0,0 +1,75 @@
+/*
+ * This file is part of tinyprotocol2, licensed under the MIT License.
+ *
+ * Copyright (c) 2022 Matouš Kučera
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package nms;
+
+import java.util.UUID;
+
+/**
+ * A fake obfuscated packet with final fields only, like the record-style packets of newer versions.
+ */
+public class FinalPacket implements Packet {
+    private final int a;
+    private final UUID b;
+    private final double c;
+    private final double d;
+    private final double e;
+    private final byte f;
+    private final byte g;
+    private final boolean h;
+
+    public FinalPacket(int id, UUID uuid, double x, double y, double z, byte yRot, byte xRot, boolean onGround) {
+        this.a = id;
+        this.b = uuid;
+        this.c = x;
+        this.d = y;
+        this.e = z;
+        this.f = yRot;
+        this.g = xRot;
+        this.h = onGround;
+    }
+
+    public FinalPacket(FriendlyByteBuf buf) {
+        this.a = buf.readInt();
+        this.b = buf.readUUID();
+        this.c = buf.readDouble();
+        this.d = buf.readDouble();
+        this.e = buf.readDouble();
+        this.f = buf.readByte();
+        this.g = buf.readByte();
+        this.h = buf.readBoolean();
+    }
+
+    @Override
+    public void a(FriendlyByteBuf buf) {
+        buf.writeInt(a);
+        buf.writeUUID(b);
+        buf.writeDouble(c);
+        buf.writeDouble(d);
+        buf.writeDouble(e);
+        buf.writeByte(f);
+        buf.writeByte(g);
+        buf.writeBoolean(h);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * This file is part of tinyprotocol2, licensed under the MIT License.
+ *
+ * Copyright (c) 2022 Matouš Kučera
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package nms;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * A fake obfuscated net.minecraft.network.FriendlyByteBuf, backed by a heap buffer.
+ */
+public class FriendlyByteBuf {
+    private final ByteBuffer buffer;
+    private int readerIndex = 0;
+
+    public FriendlyByteBuf(int capacity) {
+        this.buffer = ByteBuffer.allocate(capacity);
+    }
+
+    public void clear() {
+        buffer.clear();
+        readerIndex = 0;
+    }
+
+    public void resetReaderIndex() {
+        readerIndex = 0;
+    }
+
+    public void writeBoolean(boolean value) {
+        buffer.put((byte) (value ? 1 : 0));
+    }
+
+    public boolean readBoolean() {
+        return buffer.get(readerIndex++) != 0;
+    }
+
+    public void writeByte(byte value) {
+        buffer.put(value);
+    }
+
+    public byte readByte() {
+        return buffer.get(readerIndex++);
+    }
+
+    public void writeShort(short value) {
+        buffer.putShort(value);
+    }
+
+    public short readShort() {
+        final short value = buffer.getShort(readerIndex);
+        readerIndex += Short.BYTES;
+        return value;
+    }
+
+    public void writeInt(int value) {
+        buffer.putInt(value);
+    }
+
+    public int readInt() {
+        final int value = buffer.getInt(readerIndex);
+        readerIndex += Integer.BYTES;
+        return value;
+    }
+
+    public void writeLong(long value) {
+        buffer.putLong(value);
+    }
+
+    public long readLong() {
+        final long value = buffer.getLong(readerIndex);
+        readerIndex += Long.BYTES;
+        return value;
+    }
+
+    public void writeFloat(float value) {
+        buffer.putFloat(value);
+    }
+
+    public float readFloat() {
+        final float value = buffer.getFloat(readerIndex);
+        readerIndex += Float.BYTES;
+        return value;
+    }
+
+    public void writeDouble(double value) {
+        buffer.putDouble(value);
+    }
+
+    public double readDouble() {
+        final double value = buffer.getDouble(readerIndex);
+        readerIndex += Double.BYTES;
+        return value;
+    }
+
+    public void writeUtf(String value) {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    public String readUtf() {
+        final int length = readInt();
+        final String value = new String(buffer.array(), readerIndex, length, StandardCharsets.UTF_8);
+        readerIndex += length;
+        return value;
+    }
+
+    public void writeUUID(UUID value) {
+        buffer.putLong(value.getMostSignificantBits());
+        buffer.putLong(value.getLeastSignificantBits());
+    }
+
+    public UUID readUUID() {
+        return new UUID(readLong(), readLong());
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * This file is part of tinyprotocol2, licensed under the MIT License.
+ *
+ * Copyright (c) 2022 Matouš Kučera
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package nms;
+
+/**
+ * A fake obfuscated packet, the last two fields are only mapped in the second version.
+ */
+public class LimitedPacket implements Packet {
+    private int a;
+    private String b;
+    private long c;
+    private boolean d;
+
+    public LimitedPacket(int id, String name, long extra, boolean flag) {
+        this.a = id;
+        this.b = name;
+        this.c = extra;
+        this.d = flag;
+    }
+
+    public LimitedPacket(FriendlyByteBuf buf) {
+        this.a = buf.readInt();
+        this.b = buf.readUtf();
+        this.c = buf.readLong();
+        this.d = buf.readBoolean();
+    }
+
+    @Override
+    public void a(FriendlyByteBuf buf) {
+        buf.writeInt(a);
+        buf.writeUtf(b);
+        buf.writeLong(c);
+        buf.writeBoolean(d);
+    }
+}
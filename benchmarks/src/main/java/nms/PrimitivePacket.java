@@ -0,0 +1,73 @@
+/*
+ * This file is part of tinyprotocol2, licensed under the MIT License.
+ *
+ * Copyright (c) 2022 Matouš Kučera
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package nms;
+
+/**
+ * A fake obfuscated packet with primitive fields only.
+ */
+public class PrimitivePacket implements Packet {
+    private int a;
+    private double b;
+    private double c;
+    private double d;
+    private float e;
+    private float f;
+    private long g;
+    private boolean h;
+
+    public PrimitivePacket(int id, double x, double y, double z, float yRot, float xRot, long time, boolean onGround) {
+        this.a = id;
+        this.b = x;
+        this.c = y;
+        this.d = z;
+        this.e = yRot;
+        this.f = xRot;
+        this.g = time;
+        this.h = onGround;
+    }
+
+    public PrimitivePacket(FriendlyByteBuf buf) {
+        this.a = buf.readInt();
+        this.b = buf.readDouble();
+        this.c = buf.readDouble();
+        this.d = buf.readDouble();
+        this.e = buf.readFloat();
+        this.f = buf.readFloat();
+        this.g = buf.readLong();
+        this.h = buf.readBoolean();
+    }
+
+    @Override
+    public void a(FriendlyByteBuf buf) {
+        buf.writeInt(a);
+        buf.writeDouble(b);
+        buf.writeDouble(c);
+        buf.writeDouble(d);
+        buf.writeFloat(e);
+        buf.writeFloat(f);
+        buf.writeLong(g);
+        buf.writeBoolean(h);
+    }
+}
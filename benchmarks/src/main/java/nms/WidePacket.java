@@ -0,0 +1,108 @@
+/*
+ * This file is part of tinyprotocol2, licensed under the MIT License.
+ *
+ * Copyright (c) 2022 Matouš Kučera
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package nms;
+
+import java.util.UUID;
+
+/**
+ * A fake obfuscated packet with many fields of mixed types.
+ */
+public class WidePacket implements Packet {
+    private int a;
+    private UUID b;
+    private String c;
+    private double d;
+    private double e;
+    private double f;
+    private float g;
+    private float h;
+    private long i;
+    private short j;
+    private byte k;
+    private boolean l;
+    private String m;
+    private int n;
+    private long o;
+    private boolean p;
+
+    public WidePacket(int id, UUID uuid, String name, double x, double y, double z, float yRot, float xRot, long time,
+                      short data, byte flags, boolean onGround, String tag, int count, long seed, boolean hidden) {
+        this.a = id;
+        this.b = uuid;
+        this.c = name;
+        this.d = x;
+        this.e = y;
+        this.f = z;
+        this.g = yRot;
+        this.h = xRot;
+        this.i = time;
+        this.j = data;
+        this.k = flags;
+        this.l = onGround;
+        this.m = tag;
+        this.n = count;
+        this.o = seed;
+        this.p = hidden;
+    }
+
+    public WidePacket(FriendlyByteBuf buf) {
+        this.a = buf.readInt();
+        this.b = buf.readUUID();
+        this.c = buf.readUtf();
+        this.d = buf.readDouble();
+        this.e = buf.readDouble();
+        this.f = buf.readDouble();
+        this.g = buf.readFloat();
+        this.h = buf.readFloat();
+        this.i = buf.readLong();
+        this.j = buf.readShort();
+        this.k = buf.readByte();
+        this.l = buf.readBoolean();
+        this.m = buf.readUtf();
+        this.n = buf.readInt();
+        this.o = buf.readLong();
+        this.p = buf.readBoolean();
+    }
+
+    @Override
+    public void a(FriendlyByteBuf buf) {
+        buf.writeInt(a);
+        buf.writeUUID(b);
+        buf.writeUtf(c);
+        buf.writeDouble(d);
+        buf.writeDouble(e);
+        buf.writeDouble(f);
+        buf.writeFloat(g);
+        buf.writeFloat(h);
+        buf.writeLong(i);
+        buf.writeShort(j);
+        buf.writeByte(k);
+        buf.writeBoolean(l);
+        buf.writeUtf(m);
+        buf.writeInt(n);
+        buf.writeLong(o);
+        buf.writeBoolean(p);
+    }
+}
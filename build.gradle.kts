@@ -26,6 +26,36 @@ dependencies {
             implementation("com.fasterxml.jackson.core:jackson-databind:2.13.2.2")
         }
     }
+
+    testImplementation(gradleTestKit())
+    testImplementation("org.junit.jupiter:junit-jupiter:5.8.2")
+    // the PacketHandler and ByteBufCodec templates are tested against Netty
+    testImplementation("io.netty:netty-transport:4.1.75.Final")
+}
+
+// renders the runtime templates into a fixed package, so they can be unit tested like regular sources
+val renderTemplates by tasks.registering(Sync::class) {
+    from("src/main/resources/templates") {
+        include("Packet.java", "Reobfuscate.java", "MappingUtils.java", "NoopMetrics.java", "ByteBufCodec.java", "Recycler.java", "PacketHandler.java")
+        rename("NoopMetrics.java", "Metrics.java")
+        filter { line -> line.replace("{utilsPackage}", "me.kcra.tinyprotocol.templates").replace("{nettyPackage}", "io.netty") }
+    }
+    into(layout.buildDirectory.dir("generated/sources/templates/java/me/kcra/tinyprotocol/templates"))
+}
+
+sourceSets {
+    test {
+        java.srcDir(files(layout.buildDirectory.dir("generated/sources/templates/java")).builtBy(renderTemplates))
+    }
+}
+
+// the rendered templates carry the non-ASCII license header
+tasks.compileTestJava {
+    options.encoding = "UTF-8"
+}
+
+tasks.test {
+    useJUnitPlatform()
 }
 
 gradlePlugin {
@@ -29,11 +29,13 @@ import me.kcra.tinyprotocol.tasks.PrepareMappingsTask
 import me.kcra.tinyprotocol.tasks.GeneratePacketsTask
 import org.gradle.api.Plugin
 import org.gradle.api.Project
+import org.gradle.api.file.Directory
 import org.gradle.api.plugins.JavaPlugin
 import org.gradle.api.plugins.JavaPluginConvention
 import org.gradle.api.plugins.JavaPluginExtension
-import org.gradle.api.tasks.SourceSet
+import org.gradle.api.provider.Provider
 import org.gradle.api.tasks.SourceSetContainer
+import org.gradle.api.tasks.TaskProvider
 import org.gradle.util.GradleVersion
 
 class TinyProtocolPlugin : Plugin<Project> {
@@ -42,25 +44,62 @@ class TinyProtocolPlugin : Plugin<Project> {
         if (!target.plugins.hasPlugin(JavaPlugin::class.java)) {
             target.plugins.apply(JavaPlugin::class.java)
         }
-        val sourceSets: SourceSetContainer = getSourceSets(target)
-        val sourceSet: SourceSet = sourceSets.findByName(extension.sourceSet) ?: sourceSets.create(extension.sourceSet) {
-            it.java.srcDir("src/${extension.sourceSet}/java")
-            it.resources.srcDir("src/${extension.sourceSet}/resources")
+        // the default source set is created upfront, any other configured source set has to exist already
+        getSourceSets(target).maybeCreate("generated")
+        // the wrappers are generated into src/<sourceSet>/java, or into a task-owned build directory that is cleared on every run
+        val sourceDirectory: Provider<Directory> = extension.useBuildDirectoryProperty.flatMap { useBuildDirectory ->
+            if (useBuildDirectory) target.layout.buildDirectory.dir("generated/sources/tinyprotocol/java")
+            else target.layout.projectDirectory.dir(extension.sourceSetProperty.map { "src/$it/java" })
         }
+        val workFolder: Provider<Directory> = target.layout.buildDirectory.dir("tinyprotocol")
 
-        target.tasks.create("prepareMappings", PrepareMappingsTask::class.java, extension)
-        target.tasks.create("generatePackets", GeneratePacketsTask::class.java, extension, sourceSet)
-            .dependsOn("prepareMappings")
-        target.tasks.create("cleanSources", CleanSourcesTask::class.java, sourceSet)
+        val prepareMappings: TaskProvider<PrepareMappingsTask> = target.tasks.register("prepareMappings", PrepareMappingsTask::class.java) { task ->
+            task.versions.set(extension.versions.keySet())
+            task.localMappings.set(extension.localMappings)
+            task.verifyChecksums.set(extension.verifyChecksumsProperty)
+            task.cacheMappings.set(extension.cacheMappingsProperty)
+            task.workFolder.set(workFolder)
+            task.manifest.set(workFolder.map { it.file("mappings.json") })
+        }
+        val generatePackets: TaskProvider<GeneratePacketsTask> = target.tasks.register("generatePackets", GeneratePacketsTask::class.java) { task ->
+            task.mappingsManifest.set(prepareMappings.flatMap { it.manifest })
+            task.versions.set(extension.versions)
+            task.packets.set(extension.packets)
+            task.className.set(extension.classNameProperty)
+            task.packageName.set(extension.packageNameProperty)
+            task.utilsPackageName.set(extension.utilsPackageNameProperty)
+            task.reflectType.set(extension.reflectOptions.typeProperty)
+            task.narcissusPackage.set(extension.reflectOptions.narcissusPackageProperty)
+            task.objenesisPackage.set(extension.reflectOptions.objenesisPackageProperty)
+            task.nettyPackage.set(extension.nettyPackageProperty)
+            task.generateMetadata.set(extension.generateMetadataProperty)
+            task.precomputeMappings.set(extension.precomputeMappingsProperty)
+            task.specializeVersions.set(extension.specializeVersionsProperty)
+            task.generatePooling.set(extension.generatePoolingProperty)
+            task.generateViews.set(extension.generateViewsProperty)
+            task.generateHandler.set(extension.generateHandlerProperty)
+            task.generateInstrumentation.set(extension.generateInstrumentationProperty)
+            task.codecs.set(extension.codecs)
+            task.outputDirectory.set(sourceDirectory)
+            task.clearOutputDirectory.set(extension.useBuildDirectoryProperty)
+        }
+        target.tasks.register("cleanSources", CleanSourcesTask::class.java) { task ->
+            task.sourceDirectory.set(sourceDirectory)
+        }
 
-        target.tasks.getByName("assemble")
-            .dependsOn("generatePackets")
-        target.tasks.getByName("clean")
-            .dependsOn("cleanSources")
+        target.tasks.named("assemble") { it.dependsOn(generatePackets) }
+        target.tasks.named("clean") { it.dependsOn("cleanSources") }
+
+        getSourceSets(target).configureEach { sourceSet ->
+            // the configured source set name is only read when the source directories are resolved
+            sourceSet.java.srcDir(extension.sourceSetProperty.flatMap<Any> { name ->
+                if (name == sourceSet.name) generatePackets.flatMap { it.outputDirectory } else target.provider { listOf<Any>() }
+            })
+        }
     }
 
     @Suppress("DEPRECATION")
     private fun getSourceSets(project: Project): SourceSetContainer =
         if (GradleVersion.version(project.gradle.gradleVersion) < GradleVersion.version("7.1")) project.convention.getPlugin(JavaPluginConvention::class.java).sourceSets
         else project.extensions.getByType(JavaPluginExtension::class.java).sourceSets
-}
\ No newline at end of file
+}
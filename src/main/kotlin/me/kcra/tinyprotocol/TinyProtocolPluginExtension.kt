@@ -25,29 +25,104 @@
 package me.kcra.tinyprotocol
 
 import me.kcra.tinyprotocol.utils.ReflectType
+import me.kcra.tinyprotocol.utils.WireType
+import me.kcra.tinyprotocol.utils.getValue
+import me.kcra.tinyprotocol.utils.setValue
+import org.gradle.api.model.ObjectFactory
+import org.gradle.api.provider.ListProperty
+import org.gradle.api.provider.MapProperty
+import org.gradle.api.provider.Property
+import java.io.File
+import java.io.Serializable
+import javax.inject.Inject
 
-abstract class TinyProtocolPluginExtension {
-    internal val packets: MutableList<String> = mutableListOf()
-    internal val versions: MutableMap<String, Int> = mutableMapOf()
-    internal val reflectOptions: ReflectOptions = ReflectOptions()
-    var sourceSet: String = "generated"
-    var className: String = "{className}"
-    var packageName: String? = null
-    var utilsPackageName: String = "me.kcra.tinyprotocol.utils"
-    var verifyChecksums: Boolean = true
-    var generateMetadata: Boolean = false
+abstract class TinyProtocolPluginExtension @Inject constructor(objects: ObjectFactory) {
+    // the settings are read lazily by the tasks, the delegated properties below are a plain DSL over them
+    internal val packets: ListProperty<String> = objects.listProperty(String::class.java)
+    internal val versions: MapProperty<String, Int> = objects.mapProperty(String::class.java, Int::class.javaObjectType)
+    internal val reflectOptions: ReflectOptions = ReflectOptions(objects)
+    internal val codecs: MapProperty<String, List<CodecLayout>> = objects.mapProperty(String::class.java, List::class.java).let {
+        @Suppress("UNCHECKED_CAST")
+        it as MapProperty<String, List<CodecLayout>>
+    }
+    internal val localMappings: MapProperty<String, File> = objects.mapProperty(String::class.java, File::class.java)
+    internal val sourceSetProperty: Property<String> = objects.property(String::class.java).convention("generated")
+    internal val classNameProperty: Property<String> = objects.property(String::class.java).convention("{className}")
+    internal val packageNameProperty: Property<String> = objects.property(String::class.java)
+    internal val utilsPackageNameProperty: Property<String> = objects.property(String::class.java).convention("me.kcra.tinyprotocol.utils")
+    internal val verifyChecksumsProperty: Property<Boolean> = objects.property(Boolean::class.javaObjectType).convention(true)
+    internal val cacheMappingsProperty: Property<Boolean> = objects.property(Boolean::class.javaObjectType).convention(true)
+    internal val generateMetadataProperty: Property<Boolean> = objects.property(Boolean::class.javaObjectType).convention(false)
+    internal val precomputeMappingsProperty: Property<Boolean> = objects.property(Boolean::class.javaObjectType).convention(false)
+    internal val specializeVersionsProperty: Property<Boolean> = objects.property(Boolean::class.javaObjectType).convention(false)
+    internal val generatePoolingProperty: Property<Boolean> = objects.property(Boolean::class.javaObjectType).convention(false)
+    internal val generateViewsProperty: Property<Boolean> = objects.property(Boolean::class.javaObjectType).convention(false)
+    internal val generateHandlerProperty: Property<Boolean> = objects.property(Boolean::class.javaObjectType).convention(false)
+    internal val generateInstrumentationProperty: Property<Boolean> = objects.property(Boolean::class.javaObjectType).convention(false)
+    internal val nettyPackageProperty: Property<String> = objects.property(String::class.java).convention("io.netty")
+    internal val useBuildDirectoryProperty: Property<Boolean> = objects.property(Boolean::class.javaObjectType).convention(false)
 
-    fun packet(vararg def: String) = packets.addAll(def)
+    var sourceSet: String by sourceSetProperty
+    var className: String by classNameProperty
+    var packageName: String?
+        get() = packageNameProperty.orNull
+        set(value) = packageNameProperty.set(value)
+    var utilsPackageName: String by utilsPackageNameProperty
+    var verifyChecksums: Boolean by verifyChecksumsProperty
+    var cacheMappings: Boolean by cacheMappingsProperty
+    var generateMetadata: Boolean by generateMetadataProperty
+    var precomputeMappings: Boolean by precomputeMappingsProperty
+    var specializeVersions: Boolean by specializeVersionsProperty
+    var generatePooling: Boolean by generatePoolingProperty
+    var generateViews: Boolean by generateViewsProperty
+    var generateHandler: Boolean by generateHandlerProperty
+    var generateInstrumentation: Boolean by generateInstrumentationProperty
+    var nettyPackage: String by nettyPackageProperty
+    var useBuildDirectory: Boolean by useBuildDirectoryProperty
 
-    fun version(vararg ver: String) = ver.forEach { versions[it] = -1 }
+    fun packet(vararg def: String) = packets.addAll(*def)
+
+    fun version(vararg ver: String) = ver.forEach { versions.put(it, -1) }
     fun version(ver: String, protocol: Int) = if (protocol > -1) versions.put(ver, protocol)
         else throw IllegalArgumentException("Protocol version must be zero or higher")
 
+    fun mappings(ver: String, file: File) = localMappings.put(ver, file)
+
     fun reflect(configurer: ReflectOptions.() -> Unit) = configurer(reflectOptions)
 
-    data class ReflectOptions(
-        var type: ReflectType = ReflectType.ZERODEP,
-        var narcissusPackage: String = "io.github.toolfactory.narcissus",
-        var objenesisPackage: String = "org.objenesis"
-    )
-}
\ No newline at end of file
+    fun codec(packet: String, vararg protocols: Int, configurer: CodecLayout.() -> Unit) =
+        codecs.put(packet, (codecs.get()[packet] ?: listOf()) + CodecLayout(protocols.toList()).also(configurer))
+
+    class ReflectOptions(objects: ObjectFactory) {
+        internal val typeProperty: Property<ReflectType> = objects.property(ReflectType::class.java).convention(ReflectType.ZERODEP)
+        internal val narcissusPackageProperty: Property<String> = objects.property(String::class.java).convention("io.github.toolfactory.narcissus")
+        internal val objenesisPackageProperty: Property<String> = objects.property(String::class.java).convention("org.objenesis")
+
+        var type: ReflectType by typeProperty
+        var narcissusPackage: String by narcissusPackageProperty
+        var objenesisPackage: String by objenesisPackageProperty
+    }
+
+    // serializable, the layouts are a task input
+    class CodecLayout(internal val protocols: List<Int>) : Serializable {
+        internal val fields: MutableList<CodecField> = mutableListOf()
+
+        fun boolean(name: String) = fields.add(CodecField(name, WireType.BOOLEAN))
+        fun byte(name: String) = fields.add(CodecField(name, WireType.BYTE))
+        fun short(name: String) = fields.add(CodecField(name, WireType.SHORT))
+        fun int(name: String) = fields.add(CodecField(name, WireType.INT))
+        fun long(name: String) = fields.add(CodecField(name, WireType.LONG))
+        fun float(name: String) = fields.add(CodecField(name, WireType.FLOAT))
+        fun double(name: String) = fields.add(CodecField(name, WireType.DOUBLE))
+        fun varInt(name: String) = fields.add(CodecField(name, WireType.VAR_INT))
+        fun varLong(name: String) = fields.add(CodecField(name, WireType.VAR_LONG))
+        fun string(name: String, maxLength: Int = 32767) = fields.add(CodecField(name, WireType.STRING, maxLength))
+        fun uuid(name: String) = fields.add(CodecField(name, WireType.UUID))
+    }
+
+    data class CodecField(
+        val name: String,
+        val type: WireType,
+        val maxLength: Int = 32767
+    ) : Serializable
+}
@@ -25,12 +25,15 @@
 package me.kcra.tinyprotocol.tasks
 
 import org.gradle.api.DefaultTask
-import org.gradle.api.tasks.SourceSet
+import org.gradle.api.file.DirectoryProperty
+import org.gradle.api.tasks.Destroys
 import org.gradle.api.tasks.TaskAction
 import java.io.File
-import javax.inject.Inject
 
-abstract class CleanSourcesTask @Inject constructor(private val sourceSet: SourceSet) : DefaultTask() {
+abstract class CleanSourcesTask : DefaultTask() {
+    @get:Destroys
+    abstract val sourceDirectory: DirectoryProperty
+
     init {
         group = "protocol"
         description = "Removes generated source files."
@@ -38,11 +41,11 @@ abstract class CleanSourcesTask @Inject constructor(private val sourceSet: Sourc
 
     @TaskAction
     fun run() {
-        val sourceDir: File = sourceSet.java.srcDirs.first()
+        val sourceDir: File = sourceDirectory.get().asFile
         if (sourceDir.isDirectory) {
             for (file in sourceDir.listFiles()!!) {
                 file.deleteRecursively()
             }
         }
     }
-}
\ No newline at end of file
+}
@@ -35,24 +35,102 @@ import me.kcra.acetylene.core.utils.Pair
 import me.kcra.tinyprotocol.TinyProtocolPluginExtension
 import me.kcra.tinyprotocol.utils.*
 import org.gradle.api.DefaultTask
+import org.gradle.api.GradleException
+import org.gradle.api.file.DirectoryProperty
+import org.gradle.api.file.RegularFileProperty
 import org.gradle.api.logging.LogLevel
-import org.gradle.api.tasks.Internal
-import org.gradle.api.tasks.SourceSet
-import org.gradle.api.tasks.TaskAction
+import org.gradle.api.provider.ListProperty
+import org.gradle.api.provider.MapProperty
+import org.gradle.api.provider.Property
+import org.gradle.api.tasks.*
 import java.io.File
+import java.lang.invoke.MethodHandle
+import java.lang.invoke.MethodHandles
 import java.lang.reflect.Field
 import java.lang.reflect.Method
 import java.net.URL
 import java.nio.file.Files
 import java.nio.file.Path
 import java.nio.file.StandardCopyOption
+import java.util.Arrays
+import java.util.Collections
+import java.util.IdentityHashMap
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executor
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.ForkJoinPool
+import java.util.function.BiFunction
 import java.util.stream.Collectors
-import javax.inject.Inject
 import javax.lang.model.element.Modifier
 
-abstract class GeneratePacketsTask @Inject constructor(private val extension: TinyProtocolPluginExtension, private val sourceSet: SourceSet) : DefaultTask() {
+@CacheableTask
+abstract class GeneratePacketsTask : DefaultTask() {
+    // written by the prepareMappings task, the mapping entries are named after the source checksums
+    @get:InputFile
+    @get:PathSensitive(PathSensitivity.NONE)
+    abstract val mappingsManifest: RegularFileProperty
+
+    @get:Input
+    abstract val versions: MapProperty<String, Int>
+
+    @get:Input
+    abstract val packets: ListProperty<String>
+
+    @get:Input
+    abstract val className: Property<String>
+
+    @get:Input
+    @get:Optional
+    abstract val packageName: Property<String>
+
+    @get:Input
+    abstract val utilsPackageName: Property<String>
+
+    @get:Input
+    abstract val reflectType: Property<ReflectType>
+
+    @get:Input
+    abstract val narcissusPackage: Property<String>
+
+    @get:Input
+    abstract val objenesisPackage: Property<String>
+
+    @get:Input
+    abstract val nettyPackage: Property<String>
+
+    @get:Input
+    abstract val generateMetadata: Property<Boolean>
+
+    @get:Input
+    abstract val precomputeMappings: Property<Boolean>
+
+    @get:Input
+    abstract val specializeVersions: Property<Boolean>
+
+    @get:Input
+    abstract val generatePooling: Property<Boolean>
+
+    @get:Input
+    abstract val generateViews: Property<Boolean>
+
+    @get:Input
+    abstract val generateHandler: Property<Boolean>
+
+    @get:Input
+    abstract val generateInstrumentation: Property<Boolean>
+
+    @get:Input
+    abstract val codecs: MapProperty<String, List<TinyProtocolPluginExtension.CodecLayout>>
+
+    @get:OutputDirectory
+    abstract val outputDirectory: DirectoryProperty
+
+    // only a task-owned output directory is cleared before generating, src/<sourceSet>/java is left as is
     @get:Internal
-    internal abstract var mappings: List<TypedMappingFile>
+    abstract val clearOutputDirectory: Property<Boolean>
 
     init {
         group = "protocol"
@@ -61,11 +139,39 @@ abstract class GeneratePacketsTask @Inject constructor(private val extension: Ti
 
     @TaskAction
     fun run() {
+        val mappings: List<TypedMappingFile> = loadTypedMappings(mappingsManifest.get().asFile)
+        val outputDirectory: File = outputDirectory.get().asFile
+        // removed packets must not leave stale wrappers behind in a task-owned output directory
+        if (clearOutputDirectory.get()) {
+            outputDirectory.listFiles()?.forEach { it.deleteRecursively() }
+        }
         val protocols: Map<String, Int> = protocolVersions()
         val protocolList: List<Int> = protocols.values.toList()
 
-        val reflectClass: ClassName = ClassName.get(extension.utilsPackageName, "Reflect")
-        val mappingUtilsClass: ClassName = ClassName.get(extension.utilsPackageName, "MappingUtils")
+        // Property.get() isn't guaranteed to be thread-safe, all task properties are read here before the wrappers are generated concurrently
+        val packets: List<String> = packets.get()
+        val classNameTemplate: String = className.get()
+        val packageNameOverride: String? = packageName.orNull
+        val utilsPackage: String = utilsPackageName.get()
+        val nettyPackage: String = nettyPackage.get()
+        val reflectType: ReflectType = reflectType.get()
+        val generateMetadata: Boolean = generateMetadata.get()
+        val precomputeMappings: Boolean = precomputeMappings.get()
+        val specializeVersions: Boolean = specializeVersions.get()
+        val generatePooling: Boolean = generatePooling.get()
+        val generateViews: Boolean = generateViews.get()
+        val generateHandler: Boolean = generateHandler.get()
+        val generateInstrumentation: Boolean = generateInstrumentation.get()
+        val codecs: Map<String, List<TinyProtocolPluginExtension.CodecLayout>> = codecs.get()
+
+        val reflectClass: ClassName = ClassName.get(utilsPackage, "Reflect")
+        val mappingUtilsClass: ClassName = ClassName.get(utilsPackage, "MappingUtils")
+        val bindingClass: ClassName = ClassName.get(utilsPackage, "Binding")
+        val protocolsClass: ClassName = ClassName.get(utilsPackage, "Protocols")
+        val metricsClass: ClassName? = if (generateInstrumentation) ClassName.get(utilsPackage, "Metrics") else null
+        val compiled: Boolean = reflectType == ReflectType.COMPILED
+        // the MethodHandle implementations access the fields through handles resolved into the binding
+        val methodHandles: Boolean = compiled || reflectType == ReflectType.METHOD_HANDLES
         val packetTree: ClassAncestorTree = ClassAncestorTree.of(mappings, listOf(
             // mojang
             "net/minecraft/network/protocol/Packet",
@@ -106,255 +212,609 @@ abstract class GeneratePacketsTask @Inject constructor(private val extension: Ti
             "net/minecraft/class_2540"
         ))
 
-        for (name: String in extension.packets) {
-            logger.log(LogLevel.INFO, "Creating packet wrapper of class $name...")
-            val tree: ClassAncestorTree = ClassAncestorTree.of(name.replace('.', '/'), mappings)
-            logger.log(LogLevel.INFO, "Mapped ${tree.size()} version(s) of mapping $name.")
-            val className: String = tree.classes[0].mappings[0].value().replace('/', '.')
-            val packageName: String = extension.packageName ?: className.substring(0, className.lastIndexOf('.'))
-            val transformedClassName: String = extension.className.replace("{className}", className.substring(className.lastIndexOf('.') + 1))
-            val builder: TypeSpec.Builder = TypeSpec.classBuilder(transformedClassName)
-                .addModifiers(Modifier.PUBLIC)
-                .addSuperinterface(ClassName.get(extension.utilsPackageName, "Packet"))
-                .addJavadoc("A packet wrapper for the $className class.")
-                .addAnnotation(
-                    AnnotationSpec.builder(ClassName.get(extension.utilsPackageName, "Reobfuscate"))
-                        .addMember("value", "\$S", joinMappings(tree, protocolList))
-                        .also { annotationBuilder ->
-                            // limited support
-                            if (tree.size() < mappings.size) {
-                                if (tree.offset > 0) {
-                                    annotationBuilder.addMember("min", "\$L", protocolList[tree.offset])
-                                }
-                                if ((tree.size() + tree.offset) < mappings.size) {
-                                    annotationBuilder.addMember("max", "\$L", protocolList[(tree.size() - 1) + tree.offset])
-                                }
+        // the wrappers are generated concurrently, the log messages are buffered per packet
+        // and both are collected in the declaration order of the packets, so the output doesn't depend on scheduling
+        val executor: ExecutorService = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors().coerceAtMost(packets.size).coerceAtLeast(1)
+        )
+        val generatedClasses: List<ClassName> = try {
+            packets
+                .map { name ->
+                    CompletableFuture.supplyAsync({
+                        val messages: MutableList<kotlin.Pair<LogLevel, String>> = mutableListOf()
+                        fun log(level: LogLevel, message: String) = messages.add(level to message)
+
+                        log(LogLevel.INFO, "Creating packet wrapper of class $name...")
+                        val tree: ClassAncestorTree = ClassAncestorTree.of(name.replace('.', '/'), mappings)
+                        log(LogLevel.INFO, "Mapped ${tree.size()} version(s) of mapping $name.")
+                        val className: String = tree.classes[0].mappings[0].value().replace('/', '.')
+                        val packageName: String = packageNameOverride ?: className.substring(0, className.lastIndexOf('.'))
+                        val transformedClassName: String = classNameTemplate.replace("{className}", className.substring(className.lastIndexOf('.') + 1))
+                        val builder: TypeSpec.Builder = TypeSpec.classBuilder(transformedClassName)
+                            .addModifiers(Modifier.PUBLIC)
+                            .addSuperinterface(ClassName.get(utilsPackage, "Packet"))
+                            .addJavadoc("A packet wrapper for the $className class.")
+                            .addAnnotation(
+                                AnnotationSpec.builder(ClassName.get(utilsPackage, "Reobfuscate"))
+                                    .addMember("value", "\$S", joinMappings(tree, protocolList))
+                                    .also { annotationBuilder ->
+                                        // limited support
+                                        if (tree.size() < mappings.size) {
+                                            if (tree.offset > 0) {
+                                                annotationBuilder.addMember("min", "\$L", protocolList[tree.offset])
+                                            }
+                                            if ((tree.size() + tree.offset) < mappings.size) {
+                                                annotationBuilder.addMember("max", "\$L", protocolList[(tree.size() - 1) + tree.offset])
+                                            }
+                                        }
+                                    }
+                                    .build()
+                            )
+                        val currentClassName: ClassName = ClassName.get(packageName, transformedClassName)
+                        // protocol -> obfuscated class name
+                        val classMappings: Map<Int, String> = versionMappings(tree, protocolList)
+                        // field name -> (protocol -> obfuscated name), used for precomputed mappings
+                        val fieldMappings: MutableMap<String, Map<Int, String>> = mutableMapOf()
+                        // field name -> presence bit index, for version-limited primitive fields
+                        val presenceBits: MutableMap<String, Int> = mutableMapOf()
+                        // fields
+                        for (field: TypedDescriptableMapping in tree.walkFields()) {
+                            if (field.has(MappingType.MOJANG) && field.isConstant(MappingType.MOJANG)) {
+                                continue
                             }
-                        }
-                        .build()
-                )
-            val currentClassName: ClassName = ClassName.get(packageName, transformedClassName)
-            // fields
-            for (field: TypedDescriptableMapping in tree.walkFields()) {
-                if (field.has(MappingType.MOJANG) && field.isConstant(MappingType.MOJANG)) {
-                    continue
-                }
-                val mappings1: List<String> = field.mappings.stream().map { it.value().key() }.toList()
-                val fieldTree: DescriptableAncestorTree = tree.fieldAncestors(mappings1)
-                logger.log(LogLevel.INFO, "Mapped ${fieldTree.size()} version(s) of friendly mapping ${mappings1.joinToString(",")}.")
-                @Suppress("SENSELESS_COMPARISON")  // need this here, because searge inconsistencies
-                if (field.descriptor == null) {
-                    continue
-                }
-                val type: String = convertType(field.descriptor).replace("/", ".")
-                logger.log(LogLevel.INFO, "Creating field ${field.mapped()}, is JDK type: ${(type.startsWith("java") || PRIMITIVE_TYPES.contains(type))}")
-                builder.createField(
-                    FieldSpec.builder(type.let {
-                        if (type.startsWith("java") || PRIMITIVE_TYPES.contains(type)) {
-                            if (((fieldTree.offset > 0) || ((fieldTree.size() + fieldTree.offset) < mappings.size)) && PRIMITIVE_TYPES.contains(type)) {
-                                return@let bestGuess(PRIMITIVE_WRAPPER[type]!!)
+                            val mappings1: List<String> = field.mappings.stream().map { it.value().key() }.toList()
+                            val fieldTree: DescriptableAncestorTree = tree.fieldAncestors(mappings1)
+                            log(LogLevel.INFO, "Mapped ${fieldTree.size()} version(s) of friendly mapping ${mappings1.joinToString(",")}.")
+                            @Suppress("SENSELESS_COMPARISON")  // need this here, because searge inconsistencies
+                            if (field.descriptor == null) {
+                                continue
                             }
-                            return@let bestGuess(type)
-                        }
-                        return@let ClassName.OBJECT
-                    }, mappings1[0])
-                        .addModifiers(Modifier.PRIVATE)
-                        .also { fieldBuilder ->
-                            if ((fieldTree.offset > 0) || ((fieldTree.size() + fieldTree.offset) < mappings.size)) {
-                                fieldBuilder.initializer("null")
+                            val type: String = convertType(field.descriptor).replace("/", ".")
+                            fieldMappings[mappings1[0]] = versionMappings(fieldTree, protocolList)
+                            val limited: Boolean = (fieldTree.offset > 0) || ((fieldTree.size() + fieldTree.offset) < mappings.size)
+                            if (limited && PRIMITIVE_TYPES.contains(type)) {
+                                // primitives stay unboxed, their presence is tracked in a bitmask instead of a null value
+                                presenceBits[mappings1[0]] = presenceBits.size
                             }
-                            val fieldType: TypeName = fieldBuilder.javaClass.getDeclaredField("type").also { it.trySetAccessible() }.get(fieldBuilder) as TypeName
-                            if (fieldType == ClassName.OBJECT) {
-                                val typeClass: String = convertType(field.mappings[0].value().value())
-                                fieldBuilder.addJavadoc("A packet field with a non-JDK type: $typeClass")
-                                if (extension.generateMetadata) {
-                                    fieldBuilder.addAnnotation(
-                                        AnnotationSpec.builder(ClassName.get(extension.utilsPackageName, "Metadata"))
-                                            .addMember("externalType", "\$S", typeClass)
+                            log(LogLevel.INFO, "Creating field ${field.mapped()}, is JDK type: ${(type.startsWith("java") || PRIMITIVE_TYPES.contains(type))}")
+                            builder.createField(
+                                FieldSpec.builder(type.let {
+                                    if (type.startsWith("java") || PRIMITIVE_TYPES.contains(type)) {
+                                        return@let bestGuess(type)
+                                    }
+                                    return@let ClassName.OBJECT
+                                }, mappings1[0])
+                                    .addModifiers(Modifier.PRIVATE)
+                                    .also { fieldBuilder ->
+                                        if (limited && !PRIMITIVE_TYPES.contains(type)) {
+                                            fieldBuilder.initializer("null")
+                                        }
+                                        val fieldType: TypeName = fieldBuilder.javaClass.getDeclaredField("type").also { it.trySetAccessible() }.get(fieldBuilder) as TypeName
+                                        if (fieldType == ClassName.OBJECT) {
+                                            val typeClass: String = convertType(field.mappings[0].value().value())
+                                            fieldBuilder.addJavadoc("A packet field with a non-JDK type: $typeClass")
+                                            if (generateMetadata) {
+                                                fieldBuilder.addAnnotation(
+                                                    AnnotationSpec.builder(ClassName.get(utilsPackage, "Metadata"))
+                                                        .addMember("externalType", "\$S", typeClass)
+                                                        .build()
+                                                )
+                                            }
+                                        }
+                                    }
+                                    .addAnnotation(
+                                        AnnotationSpec.builder(ClassName.get(utilsPackage, "Reobfuscate"))
+                                            .addMember("value", "\$S", joinMappings(fieldTree, protocolList))
+                                            .also { annotationBuilder ->
+                                                // limited support
+                                                if (fieldTree.offset > 0) {
+                                                    annotationBuilder.addMember("min", "\$L", protocolList[fieldTree.offset])
+                                                }
+                                                if ((fieldTree.size() + fieldTree.offset) < mappings.size) {
+                                                    annotationBuilder.addMember("max", "\$L", protocolList[(fieldTree.size() - 1) + fieldTree.offset])
+                                                }
+                                            }
                                             .build()
                                     )
-                                }
-                            }
+                                    .build(),
+                                presenceBits[mappings1[0]]
+                            )
+                        }
+                        val fields: List<FieldSpec> = builder.fieldSpecs.toList()
+                        // presence bitmasks
+                        for (maskIndex: Int in 0 until ((presenceBits.size + 63) / 64)) {
+                            builder.addField(ClassName.LONG, presenceField(maskIndex * 64), Modifier.PRIVATE)
+                        }
+                        // dirty bitmasks, fields modified since the last synchronization with an NMS packet
+                        for (maskIndex: Int in 0 until ((fields.size + 63) / 64)) {
+                            builder.addField(ClassName.LONG, dirtyField(maskIndex * 64), Modifier.PRIVATE)
+                        }
+                        presenceBits.forEach { (fieldName, index) ->
+                            builder.addMethod(
+                                MethodSpec.methodBuilder("has" + fieldName.replaceFirstChar(Char::uppercase))
+                                    .addModifiers(Modifier.PUBLIC)
+                                    .returns(ClassName.BOOLEAN)
+                                    .addJavadoc("Returns whether the version-limited {@code $fieldName} field holds a value, i.e. it was set or read from a version that has it.\n\n")
+                                    .addJavadoc("@return is the field present?\n")
+                                    .addStatement("return (this.\$L & \$L) != 0", presenceField(index), maskBit(index))
+                                    .build()
+                            )
+                        }
+                        val codecLayouts: List<TinyProtocolPluginExtension.CodecLayout> = codecs[name] ?: listOf()
+                        // precomputed mappings are looked up by index, see the mappings(int) method below
+                        fun mappingLookup(index: Int, runtimeLookup: () -> CodeBlock): CodeBlock =
+                            if (precomputeMappings) CodeBlock.of("mappings[\$L]", index) else runtimeLookup()
+                        // bindings, indexed by Protocols.index(int)
+                        builder.addField(
+                            FieldSpec.builder(ArrayTypeName.of(bindingClass), "BINDINGS", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                                .initializer("new \$T[\$T.COUNT]", bindingClass, protocolsClass)
+                                .build()
+                        )
+                        // bindings of the versions not known at generation time
+                        builder.addField(
+                            FieldSpec.builder(ParameterizedTypeName.get(ClassName.get(Map::class.java), ClassName.INT.box(), bindingClass), "UNKNOWN_BINDINGS", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                                .initializer("new \$T<>()", ConcurrentHashMap::class.java)
+                                .build()
+                        )
+                        if (generateInstrumentation) {
+                            builder.addField(
+                                FieldSpec.builder(ClassName.get(utilsPackage, "Metrics", "PacketMetrics"), "METRICS", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                                    .initializer("\$T.packet(\$S)", ClassName.get(utilsPackage, "Metrics"), currentClassName.canonicalName())
+                                    .build()
+                            )
                         }
-                        .addAnnotation(
-                            AnnotationSpec.builder(ClassName.get(extension.utilsPackageName, "Reobfuscate"))
-                                .addMember("value", "\$S", joinMappings(fieldTree, protocolList))
-                                .also { annotationBuilder ->
-                                    // limited support
-                                    if (fieldTree.offset > 0) {
-                                        annotationBuilder.addMember("min", "\$L", protocolList[fieldTree.offset])
+                        builder.addMethod(
+                            MethodSpec.methodBuilder("binding")
+                                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                                .returns(bindingClass)
+                                .addParameter(ClassName.INT, "ver")
+                                .addJavadoc("Returns the NMS members of this packet wrapper resolved for the supplied protocol version.\n")
+                                .addJavadoc("<p>\nThe binding is resolved once per protocol version and reused by all subsequent calls with that version.\n\n")
+                                .addJavadoc("@param ver the current <strong>server</strong> protocol version\n")
+                                .addJavadoc("@return the binding\n")
+                                .addStatement("final int index = \$T.index(ver)", protocolsClass)
+                                .beginControlFlow("if (index == -1)")
+                                .addStatement("return UNKNOWN_BINDINGS.computeIfAbsent(ver, \$T::resolveBinding)", currentClassName)
+                                .endControlFlow()
+                                // bindings are immutable, a racy resolution only costs a duplicate lookup
+                                .addStatement("\$T binding = BINDINGS[index]", bindingClass)
+                                .beginControlFlow("if (binding == null)")
+                                .addStatement("BINDINGS[index] = binding = resolveBinding(ver)")
+                                .endControlFlow()
+                                .addStatement("return binding")
+                                .build()
+                        )
+                        builder.addMethod(
+                            MethodSpec.methodBuilder("resolveBinding")
+                                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                                .returns(bindingClass)
+                                .addParameter(ClassName.INT, "ver")
+                                // reflection failures while resolving are attributed to this packet wrapper
+                                .attributed(metricsClass) { resolveBuilder ->
+                                    resolveBuilder
+                                    .also { methodBuilder ->
+                                        if (precomputeMappings) {
+                                            methodBuilder.addStatement("final String[] mappings = mappings(ver)")
+                                        }
+                                    }
+                                    .addStatement("final Class<?> nmsPacketClass = \$T.getClassSafe(\$L)", reflectClass, mappingLookup(0) { CodeBlock.of("\$T.findMapping(\$T.class, ver)", mappingUtilsClass, currentClassName) })
+                                    .addStatement("final Class<?> friendlyByteBufClass = \$T.getClassSafe(\$L)", reflectClass, mappingLookup(1) { CodeBlock.of("\$T.findMapping(\$S, ver)", mappingUtilsClass, joinMappings(friendlyByteBufTree, protocolList)) })
+                                    .addStatement("final \$T[] fields = new \$T[\$L]", Field::class.java, Field::class.java, fields.size)
+                                    .addStatement("\$T readMethod = null", Method::class.java)
+                                    .addStatement("\$T writeMethod = null", Method::class.java)
+                                    .beginControlFlow("if (nmsPacketClass != null)")
+                                    .also { methodBuilder ->
+                                        if (readMethodTree != null) {
+                                            methodBuilder.addStatement("final String readMethodMapping = \$L", mappingLookup(2) { CodeBlock.of("\$T.findMapping(\$S, ver)", mappingUtilsClass, joinMappings(readMethodTree, protocolList)) })
+                                                .beginControlFlow("if (readMethodMapping != null)")
+                                                .addStatement("readMethod = \$T.getMethodSafe(nmsPacketClass, readMethodMapping, friendlyByteBufClass)", reflectClass)
+                                                .endControlFlow()
+                                        }
+                                        methodBuilder.addStatement("writeMethod = \$T.getMethodSafe(nmsPacketClass, \$L, friendlyByteBufClass)", reflectClass, mappingLookup(3) { CodeBlock.of("\$T.findMapping(\$S, ver)", mappingUtilsClass, joinMappings(writeMethodTree, protocolList)) })
+                                        fields.forEachIndexed { index, field ->
+                                            methodBuilder.addStatement("fields[\$L] = \$T.getFieldSafe(nmsPacketClass, \$L)", index, reflectClass, mappingLookup(index + 4) { CodeBlock.of("\$T.findMapping(\$T.getFieldSafe(\$T.class, \$S), ver)", mappingUtilsClass, reflectClass, currentClassName, field.name) })
+                                        }
                                     }
-                                    if ((fieldTree.size() + fieldTree.offset) < mappings.size) {
-                                        annotationBuilder.addMember("max", "\$L", protocolList[(fieldTree.size() - 1) + fieldTree.offset])
+                                    .endControlFlow()
+                                    .also { methodBuilder ->
+                                        if (methodHandles) {
+                                            methodBuilder.addStatement("final \$T[] getters = new \$T[fields.length]", MethodHandle::class.java, MethodHandle::class.java)
+                                                .addStatement("final \$T[] setters = new \$T[fields.length]", MethodHandle::class.java, MethodHandle::class.java)
+                                                .beginControlFlow("for (int i = 0; i < fields.length; i++)")
+                                                .addStatement("getters[i] = \$T.getter(fields[i])", reflectClass)
+                                                .addStatement("setters[i] = \$T.setter(fields[i])", reflectClass)
+                                                .endControlFlow()
+                                        }
+                                        if (compiled) {
+                                            methodBuilder.addStatement("final String[] names = {\$L}", fields.joinToString(", ") { "\"${it.name}\"" })
+                                                .addStatement(
+                                                    "return new \$T(ver, nmsPacketClass, friendlyByteBufClass, readMethod, writeMethod, fields, getters, setters, \$T.compileToNMS(\$T.lookup(), names, fields), \$T.compileFromNMS(\$T.lookup(), names, fields))",
+                                                    bindingClass, reflectClass, MethodHandles::class.java, reflectClass, MethodHandles::class.java
+                                                )
+                                        } else if (methodHandles) {
+                                            methodBuilder.addStatement("return new \$T(ver, nmsPacketClass, friendlyByteBufClass, readMethod, writeMethod, fields, getters, setters)", bindingClass)
+                                        } else {
+                                            methodBuilder.addStatement("return new \$T(ver, nmsPacketClass, friendlyByteBufClass, readMethod, writeMethod, fields)", bindingClass)
+                                        }
                                     }
                                 }
                                 .build()
                         )
-                        .build()
-                )
-            }
-            // toNMS method
-            builder.addMethod(
-                MethodSpec.methodBuilder("toNMS")
-                    .addModifiers(Modifier.PUBLIC)
-                    .returns(ClassName.OBJECT)
-                    .addParameter(ClassName.INT, "ver")
-                    .override()
-                    .addStatement("final String name = getClass().getSimpleName()")
-                    .addStatement("final Class<?> nmsPacketClass = \$T.getClassSafe(\$T.findMapping(getClass(), ver))", reflectClass, mappingUtilsClass)
-                    .addStatement("final Object nmsPacket = \$T.construct(nmsPacketClass)", reflectClass)
-                    .also { methodBuilder -> builder.fieldSpecs.forEach { field ->
-                        val reobfAnnotation: AnnotationSpec = field.annotations.stream()
-                            .filter { it.type is ClassName && (it.type as ClassName).simpleName().equals("Reobfuscate") }
-                            .findFirst()
-                            .orElseThrow { RuntimeException("Could not find @Reobfuscate annotation for field ${field.name}") }
-                        val min: Int = reobfAnnotation.members["min"]?.get(0)?.toString()?.toInt() ?: -1
-                        val max: Int = reobfAnnotation.members["max"]?.get(0)?.toString()?.toInt() ?: -1
-                        if (min != -1 && max != -1) {
-                            methodBuilder.beginControlFlow("if (ver < \$L && ver > \$L)", max, min)
-                                .addStatement("final \$T ${field.name}Field = \$T.getFieldSafe(nmsPacketClass, \$T.findMapping(name, \$T.getFieldSafe(getClass(), \$S), ver))", Field::class.java, reflectClass, mappingUtilsClass, reflectClass, field.name)
-                                .addStatement("\$T.setField(${field.name}Field, nmsPacket, ${field.name})", reflectClass)
+                        if (precomputeMappings) {
+                            builder.addMethod(
+                                createMappingsTable(
+                                    protocolList,
+                                    listOf(
+                                        classMappings.mapValues { it.value.replace('/', '.') },
+                                        versionMappings(friendlyByteBufTree, protocolList).mapValues { it.value.replace('/', '.') },
+                                        readMethodTree?.let { versionMappings(it, protocolList) } ?: mapOf(),
+                                        versionMappings(writeMethodTree, protocolList)
+                                    ) + fields.map { fieldMappings[it.name] ?: mapOf() }
+                                )
+                            )
+                        }
+                        // warmup method
+                        builder.addMethod(
+                            MethodSpec.methodBuilder("warmup")
+                                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                                .returns(ParameterizedTypeName.get(List::class.java, String::class.java))
+                                .addParameter(ClassName.INT, "ver")
+                                .addJavadoc("Resolves the NMS members of this packet wrapper for the supplied protocol version ahead of the first conversion.\n\n")
+                                .addJavadoc("@param ver the current <strong>server</strong> protocol version\n")
+                                .addJavadoc("@return the NMS members that couldn't be resolved, null if the packet doesn't exist in the version\n")
+                                .addStatement("final \$T binding = binding(ver)", bindingClass)
+                                .beginControlFlow("if (binding.nmsClass() == null)")
+                                .addStatement(
+                                    "return \$L ? \$T.singletonList(\$S) : null",
+                                    classMappings.keys.distinct().joinToString(" || ") { "ver == $it" }.ifEmpty { "false" },
+                                    Collections::class.java,
+                                    "class"
+                                )
                                 .endControlFlow()
-                        } else if (min != -1) {
-                            methodBuilder.beginControlFlow("if (ver >= \$L)", min)
-                                .addStatement("final \$T ${field.name}Field = \$T.getFieldSafe(nmsPacketClass, \$T.findMapping(name, \$T.getFieldSafe(getClass(), \$S), ver))", Field::class.java, reflectClass, mappingUtilsClass, reflectClass, field.name)
-                                .addStatement("\$T.setField(${field.name}Field, nmsPacket, ${field.name})", reflectClass)
+                                .also { methodBuilder ->
+                                    if (specializeVersions) {
+                                        methodBuilder.addStatement("converter(ver)")
+                                    }
+                                }
+                                .addStatement("final \$T<String> unresolved = new \$T<>()", List::class.java, ArrayList::class.java)
+                                .beginControlFlow("if (binding.friendlyByteBufClass() == null)")
+                                .addStatement("unresolved.add(\$S)", "FriendlyByteBuf class")
                                 .endControlFlow()
-                        } else if (max != -1) {
-                            methodBuilder.beginControlFlow("if (ver <= \$L)", max)
-                                .addStatement("final \$T ${field.name}Field = \$T.getFieldSafe(nmsPacketClass, \$T.findMapping(name, \$T.getFieldSafe(getClass(), \$S), ver))", Field::class.java, reflectClass, mappingUtilsClass, reflectClass, field.name)
-                                .addStatement("\$T.setField(${field.name}Field, nmsPacket, ${field.name})", reflectClass)
+                                .beginControlFlow("if (binding.writeMethod() == null)")
+                                .addStatement("unresolved.add(\$S)", "write method")
                                 .endControlFlow()
-                        } else {
-                            methodBuilder.addStatement("final \$T ${field.name}Field = \$T.getFieldSafe(nmsPacketClass, \$T.findMapping(name, \$T.getFieldSafe(getClass(), \$S), ver))", Field::class.java, reflectClass, mappingUtilsClass, reflectClass, field.name)
-                                .addStatement("\$T.setField(${field.name}Field, nmsPacket, ${field.name})", reflectClass)
+                                .also { methodBuilder ->
+                                    fields.forEachIndexed { index, field ->
+                                        methodBuilder.versionGuarded(field) {
+                                            beginControlFlow("if (binding.field(\$L) == null)", index)
+                                            addStatement("unresolved.add(\$S)", "field ${field.name}")
+                                            endControlFlow()
+                                        }
+                                    }
+                                }
+                                .addStatement("return unresolved")
+                                .build()
+                        )
+                        if (specializeVersions) {
+                            createSpecializations(builder, utilsPackage, currentClassName, fields, protocolList.filter { classMappings.containsKey(it) }.distinct(), fieldMappings, presenceBits, compiled, methodHandles)
                         }
-                    } }
-                    .addStatement("return nmsPacket")
-                    .build()
-            )
-            // fromNMS method
-            builder.addMethod(
-                MethodSpec.methodBuilder("fromNMS")
-                    .addModifiers(Modifier.PUBLIC)
-                    .addParameter(ClassName.OBJECT, "raw")
-                    .addParameter(ClassName.INT, "ver")
-                    .override()
-                    .addStatement("final String name = getClass().getSimpleName()")
-                    .also { methodBuilder -> builder.fieldSpecs.forEach { field ->
-                        val reobfAnnotation: AnnotationSpec = field.annotations.stream()
-                            .filter { it.type is ClassName && (it.type as ClassName).simpleName().equals("Reobfuscate") }
-                            .findFirst()
-                            .orElseThrow { RuntimeException("Could not find @Reobfuscate annotation for field ${field.name}") }
-                        val min: Int = reobfAnnotation.members["min"]?.get(0)?.toString()?.toInt() ?: -1
-                        val max: Int = reobfAnnotation.members["max"]?.get(0)?.toString()?.toInt() ?: -1
-                        if (min != -1 && max != -1) {
-                            methodBuilder.beginControlFlow("if (ver < \$L && ver > \$L)", max, min)
-                                .addStatement("this.${field.name} = (\$T) \$T.getField(raw, \$T.findMapping(name, \$T.getFieldSafe(getClass(), \$S), ver))", field.type, reflectClass, mappingUtilsClass, reflectClass, field.name)
-                                .endControlFlow()
-                        } else if (min != -1) {
-                            methodBuilder.beginControlFlow("if (ver >= \$L)", min)
-                                .addStatement("this.${field.name} = (\$T) \$T.getField(raw, \$T.findMapping(name, \$T.getFieldSafe(getClass(), \$S), ver))", field.type, reflectClass, mappingUtilsClass, reflectClass, field.name)
+                        // version-limited fields are guarded by the protocol version of the binding
+                        val versionLimited: Boolean = fields.any { isVersionLimited(it) }
+                        // toNMS method
+                        builder.addMethod(
+                            MethodSpec.methodBuilder("toNMS")
+                                .addModifiers(Modifier.PUBLIC)
+                                .returns(ClassName.OBJECT)
+                                .addParameter(ClassName.INT, "ver")
+                                .override()
+                                .also { methodBuilder ->
+                                    if (specializeVersions) {
+                                        methodBuilder.instrumented(metricsClass, "ToNMS") { it.addStatement("return converter(ver).toNMS(this)") }
+                                    } else {
+                                        methodBuilder.addStatement("return toNMS(binding(ver))")
+                                    }
+                                }
+                                .build()
+                        )
+                        if (!specializeVersions) {
+                            builder.addMethod(
+                                MethodSpec.methodBuilder("toNMS")
+                                    .addModifiers(Modifier.PUBLIC)
+                                    .returns(ClassName.OBJECT)
+                                    .addParameter(bindingClass, "binding")
+                                    .addJavadoc("Creates a new NMS packet and immediately populates it with values from this packet wrapper instance.\n\n")
+                                    .addJavadoc("@param binding the binding resolved for the current <strong>server</strong> protocol version, see {@link #binding(int)}\n")
+                                    .addJavadoc("@return the raw (net.minecraft) packet\n")
+                                    .instrumented(metricsClass, "ToNMS") { methodBuilder ->
+                                        if (versionLimited && !compiled) {
+                                            methodBuilder.addStatement("final int ver = binding.version()")
+                                        }
+                                        methodBuilder.addStatement("final Object nmsPacket = \$T.construct(binding.nmsClass())", reflectClass)
+                                        if (compiled) {
+                                            methodBuilder.addStatement("\$T.copy(binding.toNMSCopier(), this, nmsPacket)", reflectClass)
+                                        } else {
+                                            fields.forEachIndexed { index, field ->
+                                                methodBuilder.versionGuarded(field) {
+                                                    addStatement("\$T.set\$L(\$L, nmsPacket, this.${field.name})", reflectClass, accessorSuffix(field.type), boundField(methodHandles, index, true))
+                                                }
+                                            }
+                                        }
+                                        methodBuilder.addStatement("return nmsPacket")
+                                    }
+                                    .build()
+                            )
+                        }
+                        // applyTo method
+                        builder.addMethod(
+                            MethodSpec.methodBuilder("applyTo")
+                                .addModifiers(Modifier.PUBLIC)
+                                .addParameter(ClassName.OBJECT, "raw")
+                                .addParameter(ClassName.INT, "ver")
+                                .override()
+                                .addStatement("final \$T binding = binding(ver)", bindingClass)
+                                .beginControlFlow("if (binding.nmsClass() == null)")
+                                .addStatement("throw new \$T(\"Unsupported protocol version \" + ver)", IllegalArgumentException::class.java)
                                 .endControlFlow()
-                        } else if (max != -1) {
-                            methodBuilder.beginControlFlow("if (ver <= \$L)", max)
-                                .addStatement("this.${field.name} = (\$T) \$T.getField(raw, \$T.findMapping(name, \$T.getFieldSafe(getClass(), \$S), ver))", field.type, reflectClass, mappingUtilsClass, reflectClass, field.name)
+                                .beginControlFlow("if (!binding.nmsClass().isInstance(raw))")
+                                .addStatement(
+                                    "throw new \$T(\"Expected a \" + binding.nmsClass().getName() + \", got \" + (raw == null ? null : raw.getClass().getName()))",
+                                    IllegalArgumentException::class.java
+                                )
                                 .endControlFlow()
-                        } else {
-                            methodBuilder.addStatement("this.${field.name} = (\$T) \$T.getField(raw, \$T.findMapping(name, \$T.getFieldSafe(getClass(), \$S), ver))", field.type, reflectClass, mappingUtilsClass, reflectClass, field.name)
+                                .also { methodBuilder ->
+                                    // only the written fields are clean, the ones not available in this version stay dirty
+                                    fields.forEachIndexed { index, field ->
+                                        methodBuilder.versionGuarded(field) {
+                                            beginControlFlow("if ((this.\$L & \$L) != 0)", dirtyField(index), maskBit(index))
+                                            addStatement("\$T.set\$L(\$L, raw, this.${field.name})", reflectClass, accessorSuffix(field.type), boundField(methodHandles, index, true))
+                                            addStatement("this.\$L &= ~\$L", dirtyField(index), maskBit(index))
+                                            endControlFlow()
+                                        }
+                                    }
+                                }
+                                .build()
+                        )
+                        // fromNMS method
+                        builder.addMethod(
+                            MethodSpec.methodBuilder("fromNMS")
+                                .addModifiers(Modifier.PUBLIC)
+                                .addParameter(ClassName.OBJECT, "raw")
+                                .addParameter(ClassName.INT, "ver")
+                                .override()
+                                .also { methodBuilder ->
+                                    if (specializeVersions) {
+                                        methodBuilder.instrumented(metricsClass, "FromNMS") {
+                                            it.addStatement("converter(ver).fromNMS(raw, this)")
+                                                .clearDirty(fields.size)
+                                        }
+                                    } else {
+                                        methodBuilder.addStatement("fromNMS(raw, binding(ver))")
+                                    }
+                                }
+                                .build()
+                        )
+                        if (!specializeVersions) {
+                            builder.addMethod(
+                                MethodSpec.methodBuilder("fromNMS")
+                                    .addModifiers(Modifier.PUBLIC)
+                                    .addParameter(ClassName.OBJECT, "raw")
+                                    .addParameter(bindingClass, "binding")
+                                    .addJavadoc("Populates this packet wrapper instance with values from the supplied NMS packet.\n\n")
+                                    .addJavadoc("@param raw the raw (net.minecraft) packet\n")
+                                    .addJavadoc("@param binding the binding resolved for the current <strong>server</strong> protocol version, see {@link #binding(int)}\n")
+                                    .instrumented(metricsClass, "FromNMS") { methodBuilder ->
+                                        if (if (compiled) presenceBits.isNotEmpty() else versionLimited) {
+                                            methodBuilder.addStatement("final int ver = binding.version()")
+                                        }
+                                        if (compiled) {
+                                            methodBuilder.addStatement("\$T.copy(binding.fromNMSCopier(), raw, this)", reflectClass)
+                                            fields.forEach { field ->
+                                                presenceBits[field.name]?.let { index -> methodBuilder.versionGuarded(field) { markPresent(index, "this") } }
+                                            }
+                                        } else {
+                                            fields.forEachIndexed { index, field ->
+                                                methodBuilder.versionGuarded(field) {
+                                                    readField(reflectClass, methodHandles, field, "this", index)
+                                                    markPresent(presenceBits[field.name], "this")
+                                                }
+                                            }
+                                        }
+                                        methodBuilder.clearDirty(fields.size)
+                                    }
+                                    .build()
+                            )
                         }
-                    } }
-                    .build()
-            )
-            // read method
-            builder.addMethod(
-                MethodSpec.methodBuilder("read")
-                    .addModifiers(Modifier.PUBLIC)
-                    .addParameter(ClassName.OBJECT, "buf")
-                    .addParameter(ClassName.INT, "ver")
-                    .override()
-                    .addStatement("final Class<?> nmsPacketClass = \$T.getClassSafe(\$T.findMapping(getClass(), ver))", reflectClass, mappingUtilsClass)
-                    .also { methodBuilder ->
-                        if (readMethodTree != null) {
-                            methodBuilder.addStatement("final Class<?> friendlyByteBufClass = \$T.getClassSafe(\$T.findMapping(getClass(), \$S, ver))", reflectClass, mappingUtilsClass, joinMappings(friendlyByteBufTree, protocolList))
-                                .beginControlFlow("if (!friendlyByteBufClass.isInstance(buf))")
-                                .addStatement("throw new IllegalArgumentException(\"Not a FriendlyByteBuf\")")
-                                .endControlFlow()
-                                .addStatement("final String readMethodMapping = \$T.findMapping(getClass(), \$S, ver)", mappingUtilsClass, joinMappings(readMethodTree, protocolList))
-                                .beginControlFlow("if (readMethodMapping != null)")
-                                .addStatement("final Object nmsPacket = toNMS(ver)")
-                                .addStatement("final \$T readMethod = \$T.getMethodSafe(nmsPacket.getClass(), readMethodMapping, friendlyByteBufClass)", Method::class.java, reflectClass)
-                                .addStatement("\$T.fastInvoke(readMethod, nmsPacket, buf)", reflectClass)
-                                .addStatement("fromNMS(nmsPacket, ver)")
+                        // read method
+                        builder.addMethod(
+                            MethodSpec.methodBuilder("read")
+                                .addModifiers(Modifier.PUBLIC)
+                                .addParameter(ClassName.OBJECT, "buf")
+                                .addParameter(ClassName.INT, "ver")
+                                .override()
+                                .instrumented(metricsClass, "Read") { methodBuilder ->
+                                    if (!methodBuilder.directCodec(utilsPackage, nettyPackage, name, codecLayouts, fields, presenceBits, true)) {
+                                        return@instrumented
+                                    }
+                                    methodBuilder.addStatement("final \$T binding = binding(ver)", bindingClass)
+                                    if (readMethodTree != null) {
+                                        methodBuilder.beginControlFlow("if (!binding.friendlyByteBufClass().isInstance(buf))")
+                                            .addStatement("throw new IllegalArgumentException(\"Not a FriendlyByteBuf\")")
+                                            .endControlFlow()
+                                            .beginControlFlow("if (binding.readMethod() != null)")
+                                            .addStatement("final Object nmsPacket = toNMS(ver)")
+                                            .addStatement("\$T.fastInvoke(binding.readMethod(), nmsPacket, buf)", reflectClass)
+                                            .addStatement("fromNMS(nmsPacket, ver)")
+                                            .nextControlFlow("else")
+                                            .addStatement("fromNMS(\$T.construct(binding.nmsClass(), buf), ver)", reflectClass)
+                                            .endControlFlow()
+                                    } else {
+                                        methodBuilder.addStatement("fromNMS(\$T.construct(binding.nmsClass(), buf), ver)", reflectClass)
+                                    }
+                                }
+                                .build()
+                        )
+                        // write method
+                        builder.addMethod(
+                            MethodSpec.methodBuilder("write")
+                                .addModifiers(Modifier.PUBLIC)
+                                .addParameter(ClassName.OBJECT, "buf")
+                                .addParameter(ClassName.INT, "ver")
+                                .override()
+                                .instrumented(metricsClass, "Write") { methodBuilder ->
+                                    if (methodBuilder.directCodec(utilsPackage, nettyPackage, name, codecLayouts, fields, presenceBits, false)) {
+                                        methodBuilder.addStatement("\$T.fastInvoke(binding(ver).writeMethod(), toNMS(ver), buf)", reflectClass)
+                                    }
+                                }
+                                .build()
+                        )
+                        // reset method
+                        builder.addMethod(
+                            MethodSpec.methodBuilder("reset")
+                                .addModifiers(Modifier.PUBLIC)
+                                .override()
+                                .also { methodBuilder ->
+                                    fields.forEach { field ->
+                                        methodBuilder.addStatement("this.${field.name} = \$L", when (field.type.toString()) {
+                                            "boolean" -> "false"
+                                            in PRIMITIVE_TYPES -> "0"
+                                            else -> "null"
+                                        })
+                                    }
+                                    for (maskIndex: Int in 0 until ((presenceBits.size + 63) / 64)) {
+                                        methodBuilder.addStatement("this.\$L = 0", presenceField(maskIndex * 64))
+                                    }
+                                    methodBuilder.clearDirty(fields.size)
+                                }
+                                .build()
+                        )
+                        if (generateViews) {
+                            createView(builder, utilsPackage, methodHandles, currentClassName, fields, presenceBits)
+                        }
+                        if (generatePooling) {
+                            val recyclerType: TypeName = ParameterizedTypeName.get(ClassName.get(utilsPackage, "Recycler"), currentClassName)
+                            builder.addField(
+                                FieldSpec.builder(recyclerType, "RECYCLER", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                                    .initializer("new \$T<>(\$T::new)", ClassName.get(utilsPackage, "Recycler"), currentClassName)
+                                    .build()
+                            )
+                            builder.addMethod(
+                                MethodSpec.methodBuilder("obtain")
+                                    .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                                    .returns(currentClassName)
+                                    .addJavadoc("Takes a reset instance from the pool of the current thread, or creates a new one if the pool is empty.\n\n")
+                                    .addJavadoc("@return the packet wrapper instance\n")
+                                    .addStatement("return RECYCLER.obtain()")
+                                    .build()
+                            )
+                            builder.addMethod(
+                                MethodSpec.methodBuilder("recycle")
+                                    .addModifiers(Modifier.PUBLIC)
+                                    .addJavadoc("Resets this instance and returns it to the pool of the current thread, it must not be used afterwards.\n")
+                                    .addStatement("RECYCLER.recycle(this)")
+                                    .build()
+                            )
+                        }
+
+                        // constructors
+                        log(LogLevel.INFO, "Creating constructors...")
+                        if (generatePooling && fields.isNotEmpty()) {
+                            builder.addMethod(
+                                MethodSpec.constructorBuilder()
+                                    .addModifiers(Modifier.PUBLIC)
+                                    .build()
+                            )
+                        }
+                        builder.addMethod(
+                            MethodSpec.constructorBuilder()
+                                .addModifiers(Modifier.PUBLIC)
+                                .also { fields.forEach { field -> it.addParameter(field.type, field.name).addStatement("this." + field.name + " = " + field.name) } }
+                                .also { methodBuilder ->
+                                    // all values are supplied
+                                    presenceBits.values.forEach { methodBuilder.markPresent(it, "this") }
+                                    fields.indices.forEach { index -> methodBuilder.addStatement("this.\$L |= \$L", dirtyField(index), maskBit(index)) }
+                                }
+                                .build()
+                        )
+                        builder.addMethod(
+                            MethodSpec.constructorBuilder()
+                                .addModifiers(Modifier.PUBLIC)
+                                .addParameter(ClassName.OBJECT, "raw")
+                                .addParameter(ClassName.INT, "ver")
+                                .addStatement("this(raw, binding(ver))")
+                                .build()
+                        )
+                        builder.addMethod(
+                            MethodSpec.constructorBuilder()
+                                .addModifiers(Modifier.PUBLIC)
+                                .addParameter(ClassName.OBJECT, "raw")
+                                .addParameter(bindingClass, "binding")
+                                .beginControlFlow("if (binding.nmsClass().isInstance(raw))")
+                                .addStatement(if (specializeVersions) "fromNMS(raw, binding.version())" else "fromNMS(raw, binding)")
+                                .nextControlFlow("else if (binding.friendlyByteBufClass().isInstance(raw))")
+                                .addStatement("read(raw, binding.version())")
                                 .nextControlFlow("else")
-                                .addStatement("fromNMS(\$T.construct(nmsPacketClass, buf), ver)", reflectClass)
+                                .addStatement("throw new IllegalArgumentException(\"Unsupported type provided for transformation\")")
                                 .endControlFlow()
-                        } else {
-                            methodBuilder.addStatement("fromNMS(\$T.construct(nmsPacketClass, buf), ver)", reflectClass)
-                        }
+                                .build()
+                        )
+                        JavaFile.builder(packageName, builder.build())
+                            .indent("    ") // 4 space indent
+                            .addFileComment("This file was generated with tinyprotocol2. Do not edit, changes will be overwritten!")
+                            .skipJavaLangImports(true)
+                            .build()
+                            .writeToFile(outputDirectory)
+                        log(LogLevel.LIFECYCLE, "Wrote ${currentClassName.simpleName()}.")
+                        currentClassName to messages
+                    }, executor)
+                }
+                .map { future ->
+                    val (generatedClass: ClassName, messages: List<kotlin.Pair<LogLevel, String>>) = try {
+                        future.join()
+                    } catch (e: CompletionException) {
+                        throw e.cause ?: e
                     }
-                    .build()
-            )
-            // write method
-            builder.addMethod(
-                MethodSpec.methodBuilder("write")
-                    .addModifiers(Modifier.PUBLIC)
-                    .addParameter(ClassName.OBJECT, "buf")
-                    .addParameter(ClassName.INT, "ver")
-                    .override()
-                    .addStatement("final Object nmsPacket = toNMS(ver)")
-                    .addStatement("final Class<?> friendlyByteBufClass = \$T.getClassSafe(\$T.findMapping(getClass(), \$S, ver))", reflectClass, mappingUtilsClass, joinMappings(friendlyByteBufTree, protocolList))
-                    .addStatement("final String writeMethodMapping = \$T.findMapping(getClass(), \$S, ver)", mappingUtilsClass, joinMappings(writeMethodTree, protocolList))
-                    .addStatement("final \$T writeMethod = \$T.getMethodSafe(nmsPacket.getClass(), writeMethodMapping, friendlyByteBufClass)", Method::class.java, reflectClass)
-                    .addStatement("\$T.fastInvoke(writeMethod, nmsPacket, buf)", reflectClass)
-                    .build()
-            )
-
-            // constructors
-            logger.log(LogLevel.INFO, "Creating constructors...")
-            builder.addMethod(
-                MethodSpec.constructorBuilder()
-                    .addModifiers(Modifier.PUBLIC)
-                    .also { builder.fieldSpecs.forEach { field -> it.addParameter(field.type, field.name).addStatement("this." + field.name + " = " + field.name) } }
-                    .build()
-            )
-            builder.addMethod(
-                MethodSpec.constructorBuilder()
-                    .addModifiers(Modifier.PUBLIC)
-                    .addParameter(ClassName.OBJECT, "raw")
-                    .addParameter(ClassName.INT, "ver")
-                    .addStatement("final Class<?> nmsPacketClass = \$T.getClassSafe(\$T.findMapping(getClass(), ver))", reflectClass, mappingUtilsClass)
-                    .addStatement("final Class<?> friendlyByteBufClass = \$T.getClassSafe(\$T.findMapping(getClass(), \$S, ver))", reflectClass, mappingUtilsClass, joinMappings(friendlyByteBufTree, protocolList))
-                    .beginControlFlow("if (nmsPacketClass.isInstance(raw))")
-                    .addStatement("fromNMS(raw, ver)")
-                    .nextControlFlow("else if (friendlyByteBufClass.isInstance(raw))")
-                    .addStatement("read(raw, ver)")
-                    .nextControlFlow("else")
-                    .addStatement("throw new IllegalArgumentException(\"Unsupported type provided for transformation\")")
-                    .endControlFlow()
-                    .build()
-            )
-            JavaFile.builder(packageName, builder.build())
-                .indent("    ") // 4 space indent
-                .addFileComment("This file was generated with tinyprotocol2. Do not edit, changes will be overwritten!")
-                .skipJavaLangImports(true)
-                .build()
-                .writeToFile(sourceSet.java.srcDirs.first())
-            logger.log(LogLevel.LIFECYCLE, "Wrote ${currentClassName.simpleName()}.")
+                    messages.forEach { (level, message) -> logger.log(level, message) }
+                    generatedClass
+                }
+        } finally {
+            executor.shutdownNow()
         }
-        if (extension.generateMetadata) {
+        if (generateMetadata) {
             copyTemplateClass("Metadata")
         }
-        when (extension.reflectOptions.type) {
+        createProtocols(protocolList.distinct())
+        createPacketRegistry(generatedClasses)
+        createPackets(generatedClasses)
+        copyTemplateClass("WarmupReport")
+        if (generatePooling) {
+            copyTemplateClass("Recycler")
+        }
+        if (codecs.isNotEmpty()) {
+            copyTemplateClass("ByteBufCodec")
+        }
+        if (generateInstrumentation) {
+            copyTemplateClass("Metrics")
+        } else {
+            copyTemplateClassAs("NoopMetrics", "Metrics")
+        }
+        if (generateHandler) {
+            copyTemplateClass("PacketHandler")
+        }
+        if (specializeVersions) {
+            createPacketFactory(generatedClasses)
+            copyTemplateClass("Converter")
+        }
+        when (reflectType) {
             ReflectType.ZERODEP -> copyTemplateClass("Reflect")
             ReflectType.NARCISSUS -> copyTemplateClassAs("NarcissusReflect", "Reflect")
             ReflectType.OBJENESIS -> copyTemplateClassAs("ObjenesisReflect", "Reflect")
+            ReflectType.METHOD_HANDLES, ReflectType.COMPILED -> copyTemplateClassAs("MethodHandlesReflect", "Reflect")
         }
-        copyTemplateClasses("Reobfuscate", "MappingUtils", "Packet")
+        copyTemplateClasses("Reobfuscate", "MappingUtils", "Packet", "Binding", "Constructors")
     }
 
     private fun protocolVersions(): Map<String, Int> {
-        val versions: MutableMap<String, Int> = extension.versions.toMutableMap()
+        val versions: MutableMap<String, Int> = this.versions.get().toMutableMap()
         if (versions.containsValue(-1)) {
             val refreshedVersions: Map<String, Int> =
                 MAPPER.readValue<List<ProtocolData>>(URL("https://raw.githubusercontent.com/PrismarineJS/minecraft-data/master/data/pc/common/protocolVersions.json"))
@@ -375,6 +835,39 @@ abstract class GeneratePacketsTask @Inject constructor(private val extension: Ti
         return ClassName.bestGuess(name)
     }
     
+    // times the method body if instrumentation is enabled, the body may return early
+    // times the body and attributes its reflection failures to the packet wrapper, metricsClass is null without instrumentation
+    private fun MethodSpec.Builder.instrumented(metricsClass: ClassName?, operation: String, body: (MethodSpec.Builder) -> Unit): MethodSpec.Builder {
+        if (metricsClass == null) {
+            body(this)
+            return this
+        }
+        addStatement("final long start = System.nanoTime()")
+        addStatement("final \$T previous = \$T.enter(METRICS)", metricsClass.nestedClass("PacketMetrics"), metricsClass)
+        beginControlFlow("try")
+        body(this)
+        nextControlFlow("finally")
+        addStatement("\$T.exit(previous)", metricsClass)
+        addStatement("METRICS.record\$L(start)", operation)
+        endControlFlow()
+        return this
+    }
+
+    // attributes the reflection failures of the body to the packet wrapper, metricsClass is null without instrumentation
+    private fun MethodSpec.Builder.attributed(metricsClass: ClassName?, body: (MethodSpec.Builder) -> Unit): MethodSpec.Builder {
+        if (metricsClass == null) {
+            body(this)
+            return this
+        }
+        addStatement("final \$T previous = \$T.enter(METRICS)", metricsClass.nestedClass("PacketMetrics"), metricsClass)
+        beginControlFlow("try")
+        body(this)
+        nextControlFlow("finally")
+        addStatement("\$T.exit(previous)", metricsClass)
+        endControlFlow()
+        return this
+    }
+
     private fun MethodSpec.Builder.override(withJavadoc: Boolean = true): MethodSpec.Builder {
         addAnnotation(OVERRIDE_ANNOTATION)
         if (withJavadoc) {
@@ -383,10 +876,136 @@ abstract class GeneratePacketsTask @Inject constructor(private val extension: Ti
         return this
     }
 
-    private fun TypeSpec.Builder.createField(field: FieldSpec): TypeSpec.Builder {
+    private fun isVersionLimited(field: FieldSpec): Boolean = field.annotations.any { annotation ->
+        annotation.type is ClassName && (annotation.type as ClassName).simpleName().equals("Reobfuscate")
+            && (annotation.members.containsKey("min") || annotation.members.containsKey("max"))
+    }
+
+    private fun MethodSpec.Builder.versionGuarded(field: FieldSpec, block: MethodSpec.Builder.() -> Unit): MethodSpec.Builder {
+        val reobfAnnotation: AnnotationSpec = field.annotations.stream()
+            .filter { it.type is ClassName && (it.type as ClassName).simpleName().equals("Reobfuscate") }
+            .findFirst()
+            .orElseThrow { RuntimeException("Could not find @Reobfuscate annotation for field ${field.name}") }
+        val min: Int = reobfAnnotation.members["min"]?.get(0)?.toString()?.toInt() ?: -1
+        val max: Int = reobfAnnotation.members["max"]?.get(0)?.toString()?.toInt() ?: -1
+        if (min != -1 && max != -1) {
+            beginControlFlow("if (ver < \$L && ver > \$L)", max, min)
+            block()
+            endControlFlow()
+        } else if (min != -1) {
+            beginControlFlow("if (ver >= \$L)", min)
+            block()
+            endControlFlow()
+        } else if (max != -1) {
+            beginControlFlow("if (ver <= \$L)", max)
+            block()
+            endControlFlow()
+        } else {
+            block()
+        }
+        return this
+    }
+
+    /**
+     * Emits direct buffer read/write blocks for the supplied codec layouts.
+     *
+     * @return whether the remaining versions still need the NMS fallback
+     */
+    private fun MethodSpec.Builder.directCodec(utilsPackage: String, nettyPackage: String, packetName: String, layouts: List<TinyProtocolPluginExtension.CodecLayout>, fields: List<FieldSpec>, presenceBits: Map<String, Int>, read: Boolean): Boolean {
+        val codecClass: ClassName = ClassName.get(utilsPackage, "ByteBufCodec")
+        val byteBuf: ClassName = ClassName.get("$nettyPackage.buffer", "ByteBuf")
+        // layouts for all versions go last, they end the method
+        for (layout: TinyProtocolPluginExtension.CodecLayout in layouts.sortedBy { it.protocols.isEmpty() }) {
+            if (layout.protocols.isNotEmpty()) {
+                beginControlFlow("if (\$L)", layout.protocols.joinToString(" || ") { "ver == $it" })
+            }
+            if (layout.fields.isNotEmpty()) {
+                addStatement("final \$T byteBuf = (\$T) buf", byteBuf, byteBuf)
+            }
+            for (codecField: TinyProtocolPluginExtension.CodecField in layout.fields) {
+                // a mismatch would only fail when compiling the generated code
+                val fieldType: String = fields.find { it.name == codecField.name }?.type?.toString()
+                    ?: throw GradleException("Could not find field ${codecField.name} of packet $packetName for codec")
+                if (fieldType !in WIRE_FIELD_TYPES.getValue(codecField.type)) {
+                    throw GradleException("Codec type ${codecField.type} of field ${codecField.name} of packet $packetName doesn't match the field type $fieldType")
+                }
+                val field = "this.${codecField.name}"
+                if (read) {
+                    when (codecField.type) {
+                        WireType.VAR_INT -> addStatement("$field = \$T.readVarInt(byteBuf)", codecClass)
+                        WireType.VAR_LONG -> addStatement("$field = \$T.readVarLong(byteBuf)", codecClass)
+                        WireType.STRING -> addStatement("$field = \$T.readString(byteBuf, \$L)", codecClass, codecField.maxLength)
+                        WireType.UUID -> addStatement("$field = \$T.readUUID(byteBuf)", codecClass)
+                        else -> addStatement("$field = byteBuf.read${BYTE_BUF_TYPES[codecField.type]}()")
+                    }
+                    markPresent(presenceBits[codecField.name], "this")
+                } else {
+                    when (codecField.type) {
+                        WireType.VAR_INT -> addStatement("\$T.writeVarInt(byteBuf, $field)", codecClass)
+                        WireType.VAR_LONG -> addStatement("\$T.writeVarLong(byteBuf, $field)", codecClass)
+                        WireType.STRING -> addStatement("\$T.writeString(byteBuf, $field, \$L)", codecClass, codecField.maxLength)
+                        WireType.UUID -> addStatement("\$T.writeUUID(byteBuf, $field)", codecClass)
+                        else -> addStatement("byteBuf.write${BYTE_BUF_TYPES[codecField.type]}($field)")
+                    }
+                }
+            }
+            if (read) {
+                clearDirty(fields.size)
+            }
+            if (layout.protocols.isEmpty()) {
+                return false
+            }
+            addStatement("return")
+            endControlFlow()
+        }
+        return true
+    }
+
+    private fun MethodSpec.Builder.readField(reflectClass: ClassName, methodHandles: Boolean, field: FieldSpec, target: String, index: Int, constant: Boolean = false): MethodSpec.Builder {
+        if (PRIMITIVE_TYPES.contains(field.type.toString())) {
+            return addStatement("$target.${field.name} = \$T.get\$L(\$L, raw)", reflectClass, accessorSuffix(field.type), boundField(methodHandles, index, false, constant))
+        }
+        return addStatement("$target.${field.name} = (\$T) \$T.getField(\$L, raw)", field.type, reflectClass, boundField(methodHandles, index, false, constant))
+    }
+
+    // the NMS field accessed by the Reflect accessors, the MethodHandle implementations take the handles resolved into the binding,
+    // or the static final handle constants of a specialized converter
+    private fun boundField(methodHandles: Boolean, index: Int, write: Boolean, constant: Boolean = false): CodeBlock = when {
+        !methodHandles -> CodeBlock.of("binding.field(\$L)", index)
+        constant -> CodeBlock.of(if (write) "SETTER_\$L" else "GETTER_\$L", index)
+        write -> CodeBlock.of("binding.setter(\$L)", index)
+        else -> CodeBlock.of("binding.getter(\$L)", index)
+    }
+
+    private fun MethodSpec.Builder.clearDirty(fieldCount: Int): MethodSpec.Builder {
+        for (maskIndex: Int in 0 until ((fieldCount + 63) / 64)) {
+            addStatement("this.\$L = 0", dirtyField(maskIndex * 64))
+        }
+        return this
+    }
+
+    private fun MethodSpec.Builder.markPresent(presenceIndex: Int?, target: String): MethodSpec.Builder {
+        if (presenceIndex != null) {
+            addStatement("$target.\$L |= \$L", presenceField(presenceIndex), maskBit(presenceIndex))
+        }
+        return this
+    }
+
+    // Reflect accessor suffix, e.g. Int for Reflect.getInt, Field for reference types
+    private fun accessorSuffix(type: TypeName): String = type.toString().let { if (PRIMITIVE_TYPES.contains(it)) it.replaceFirstChar(Char::uppercase) else "Field" }
+
+    private fun presenceField(index: Int): String = "present${index / 64}"
+
+    private fun dirtyField(index: Int): String = "dirty${index / 64}"
+
+    private fun maskBit(index: Int): String = "0x${java.lang.Long.toHexString(1L shl (index % 64))}L"
+
+    private fun TypeSpec.Builder.createField(field: FieldSpec, presenceIndex: Int? = null): TypeSpec.Builder {
+        // the field index, used for the dirty bitmask
+        val index: Int = fieldSpecs.size
         addField(field)
         createGetter(field)
-        createSetter(field)
+        createSetter(field, index, presenceIndex)
         return this
     }
 
@@ -401,12 +1020,14 @@ abstract class GeneratePacketsTask @Inject constructor(private val extension: Ti
         return this
     }
 
-    private fun TypeSpec.Builder.createSetter(spec: FieldSpec): TypeSpec.Builder {
+    private fun TypeSpec.Builder.createSetter(spec: FieldSpec, index: Int, presenceIndex: Int?): TypeSpec.Builder {
         addMethod(
             MethodSpec.methodBuilder(spec.name)
                 .addModifiers(Modifier.PUBLIC)
                 .addParameter(spec.type, spec.name)
                 .addStatement("this." + spec.name + " = " + spec.name)
+                .addStatement("this.\$L |= \$L", dirtyField(index), maskBit(index))
+                .markPresent(presenceIndex, "this")
                 .build()
         )
         return this
@@ -417,18 +1038,876 @@ abstract class GeneratePacketsTask @Inject constructor(private val extension: Ti
     private fun copyTemplateClass(name: String) = copyTemplateClassAs(name, name)
 
     private fun copyTemplateClassAs(name: String, newName: String) {
-        val file: File = Path.of(sourceSet.java.srcDirs.first().absolutePath, extension.utilsPackageName.replace('.', File.separatorChar), "$newName.java")
+        val file: File = Path.of(outputDirectory.get().asFile.absolutePath, utilsPackageName.get().replace('.', File.separatorChar), "$newName.java")
             .toFile()
             .also { it.parentFile.mkdirs() }
         Files.copy(javaClass.getResourceAsStream("/templates/$name.java")!!, file.toPath(), StandardCopyOption.REPLACE_EXISTING)
         file.writeText(
             file.readText()
-                .replace("{utilsPackage}", extension.utilsPackageName)
-                .replace("{narcissusPackage}", extension.reflectOptions.narcissusPackage)
-                .replace("{objenesisPackage}", extension.reflectOptions.objenesisPackage)
+                .replace("{utilsPackage}", utilsPackageName.get())
+                .replace("{narcissusPackage}", narcissusPackage.get())
+                .replace("{objenesisPackage}", objenesisPackage.get())
+                .replace("{nettyPackage}", nettyPackage.get())
+        )
+    }
+
+    private fun createSpecializations(builder: TypeSpec.Builder, utilsPackage: String, currentClassName: ClassName, fields: List<FieldSpec>, protocolVersions: List<Int>, fieldMappings: Map<String, Map<Int, String>>, presenceBits: Map<String, Int>, compiled: Boolean, methodHandles: Boolean) {
+        val reflectClass: ClassName = ClassName.get(utilsPackage, "Reflect")
+        val bindingClass: ClassName = ClassName.get(utilsPackage, "Binding")
+        val converterClass: ClassName = ClassName.get(utilsPackage, "Converter")
+        val converterType: TypeName = ParameterizedTypeName.get(converterClass, currentClassName)
+        val protocolsClass: ClassName = ClassName.get(utilsPackage, "Protocols")
+        // present field indexes -> versions, versions sharing the same fields share an implementation
+        val groups: MutableMap<List<Int>, MutableList<Int>> = linkedMapOf()
+        protocolVersions.forEach { ver ->
+            groups.getOrPut(fields.indices.filter { fieldMappings[fields[it].name]?.containsKey(ver) == true }) { mutableListOf() }.add(ver)
+        }
+        // present field indexes -> versions of an implementation, the MethodHandle implementations keep their handles
+        // in static final constants the JIT can inline, so they can't be shared by versions with different NMS classes
+        val implementations: List<kotlin.Pair<List<Int>, List<Int>>> =
+            if (methodHandles) groups.flatMap { (present, versions) -> versions.map { present to listOf(it) } }
+            else groups.toList()
+        // converters, indexed by Protocols.index(int)
+        builder.addField(
+            FieldSpec.builder(ArrayTypeName.of(ParameterizedTypeName.get(converterClass, WildcardTypeName.subtypeOf(Object::class.java))), "CONVERTERS", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .initializer("new \$T<?>[\$T.COUNT]", converterClass, protocolsClass)
+                .build()
+        )
+        builder.addMethod(
+            MethodSpec.methodBuilder("converter")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addAnnotation(
+                    AnnotationSpec.builder(SuppressWarnings::class.java)
+                        .addMember("value", "\$S", "unchecked")
+                        .build()
+                )
+                .returns(converterType)
+                .addParameter(ClassName.INT, "ver")
+                .addJavadoc("Returns the conversion implementation specialized for the supplied protocol version.\n")
+                .addJavadoc("<p>\nThe implementation is selected once per protocol version and reused by all subsequent calls with that version.\n\n")
+                .addJavadoc("@param ver the current <strong>server</strong> protocol version\n")
+                .addJavadoc("@return the converter\n")
+                .addStatement("final int index = \$T.index(ver)", protocolsClass)
+                // no version group has the versions not known at generation time
+                .beginControlFlow("if (index == -1)")
+                .addStatement("throw new \$T(\"Unsupported protocol version \" + ver)", IllegalArgumentException::class.java)
+                .endControlFlow()
+                .addStatement("\$T converter = (\$T) CONVERTERS[index]", converterType, converterType)
+                .beginControlFlow("if (converter == null)")
+                .addStatement("CONVERTERS[index] = converter = createConverter(ver)")
+                .endControlFlow()
+                .addStatement("return converter")
+                .build()
+        )
+        builder.addMethod(
+            MethodSpec.methodBuilder("createConverter")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .returns(converterType)
+                .addParameter(ClassName.INT, "ver")
+                .beginControlFlow("switch (ver)")
+                .also { methodBuilder ->
+                    implementations.forEach { (_, versions) ->
+                        versions.forEach { methodBuilder.addCode("case \$L:\n", it) }
+                        methodBuilder.addCode("\$>")
+                            .addStatement("return new Protocol\$L(binding(ver))", versions[0])
+                            .addCode("\$<")
+                    }
+                }
+                .addCode("default:\n\$>")
+                .addStatement("throw new IllegalArgumentException(\"Unsupported protocol version \" + ver)")
+                .addCode("\$<")
+                .endControlFlow()
+                .build()
+        )
+        implementations.forEach { (present, versions) ->
+            builder.addType(
+                TypeSpec.classBuilder("Protocol${versions[0]}")
+                    .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                    .addSuperinterface(converterType)
+                    .addJavadoc("A conversion implementation specialized for protocol version(s) ${versions.joinToString(", ")}.")
+                    .also { typeBuilder ->
+                        if (compiled) {
+                            typeBuilder.addField(
+                                FieldSpec.builder(MethodHandle::class.java, "TO_NMS_COPIER", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                                    .initializer("binding(\$L).toNMSCopier()", versions[0])
+                                    .build()
+                            )
+                            typeBuilder.addField(
+                                FieldSpec.builder(MethodHandle::class.java, "FROM_NMS_COPIER", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                                    .initializer("binding(\$L).fromNMSCopier()", versions[0])
+                                    .build()
+                            )
+                        } else if (methodHandles) {
+                            present.forEach { index ->
+                                typeBuilder.addField(
+                                    FieldSpec.builder(MethodHandle::class.java, "GETTER_$index", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                                        .initializer("binding(\$L).getter(\$L)", versions[0], index)
+                                        .build()
+                                )
+                                typeBuilder.addField(
+                                    FieldSpec.builder(MethodHandle::class.java, "SETTER_$index", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                                        .initializer("binding(\$L).setter(\$L)", versions[0], index)
+                                        .build()
+                                )
+                            }
+                        }
+                    }
+                    .addField(bindingClass, "binding", Modifier.PRIVATE, Modifier.FINAL)
+                    .addMethod(
+                        MethodSpec.constructorBuilder()
+                            .addParameter(bindingClass, "binding")
+                            .addStatement("this.binding = binding")
+                            .build()
+                    )
+                    .addMethod(
+                        MethodSpec.methodBuilder("version")
+                            .addModifiers(Modifier.PUBLIC)
+                            .returns(ClassName.INT)
+                            .override()
+                            .addStatement("return binding.version()")
+                            .build()
+                    )
+                    .addMethod(
+                        MethodSpec.methodBuilder("toNMS")
+                            .addModifiers(Modifier.PUBLIC)
+                            .returns(ClassName.OBJECT)
+                            .addParameter(currentClassName, "packet")
+                            .override()
+                            .addStatement("final Object nmsPacket = \$T.construct(binding.nmsClass())", reflectClass)
+                            .also { methodBuilder ->
+                                if (compiled) {
+                                    methodBuilder.addStatement("\$T.copy(TO_NMS_COPIER, packet, nmsPacket)", reflectClass)
+                                } else {
+                                    present.forEach { index ->
+                                        methodBuilder.addStatement("\$T.set\$L(\$L, nmsPacket, packet.${fields[index].name})", reflectClass, accessorSuffix(fields[index].type), boundField(methodHandles, index, true, constant = true))
+                                    }
+                                }
+                            }
+                            .addStatement("return nmsPacket")
+                            .build()
+                    )
+                    .addMethod(
+                        MethodSpec.methodBuilder("fromNMS")
+                            .addModifiers(Modifier.PUBLIC)
+                            .addParameter(ClassName.OBJECT, "raw")
+                            .addParameter(currentClassName, "packet")
+                            .override()
+                            .also { methodBuilder ->
+                                if (compiled) {
+                                    methodBuilder.addStatement("\$T.copy(FROM_NMS_COPIER, raw, packet)", reflectClass)
+                                }
+                                present.forEach { index ->
+                                    if (!compiled) {
+                                        methodBuilder.readField(reflectClass, methodHandles, fields[index], "packet", index, constant = true)
+                                    }
+                                    methodBuilder.markPresent(presenceBits[fields[index].name], "packet")
+                                }
+                            }
+                            .build()
+                    )
+                    .build()
+            )
+        }
+    }
+
+    private fun createView(builder: TypeSpec.Builder, utilsPackage: String, methodHandles: Boolean, currentClassName: ClassName, fields: List<FieldSpec>, presenceBits: Map<String, Int>) {
+        val reflectClass: ClassName = ClassName.get(utilsPackage, "Reflect")
+        val bindingClass: ClassName = ClassName.get(utilsPackage, "Binding")
+        val viewClass: ClassName = currentClassName.nestedClass("View")
+        builder.addMethod(
+            MethodSpec.methodBuilder("view")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(viewClass)
+                .addParameter(ClassName.OBJECT, "raw")
+                .addParameter(ClassName.INT, "ver")
+                .addJavadoc("Creates a lazy read-only view of the supplied NMS packet, which reads the fields only when they are accessed.\n\n")
+                .addJavadoc("@param raw the raw (net.minecraft) packet\n")
+                .addJavadoc("@param ver the current <strong>server</strong> protocol version\n")
+                .addJavadoc("@return the view\n")
+                .addStatement("return new \$T(raw, binding(ver))", viewClass)
+                .build()
+        )
+        builder.addType(
+            TypeSpec.classBuilder(viewClass)
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                .addJavadoc("A lazy read-only view of a NMS packet, the fields are read on first access and cached.")
+                .addField(ClassName.OBJECT, "raw", Modifier.PRIVATE, Modifier.FINAL)
+                .addField(bindingClass, "binding", Modifier.PRIVATE, Modifier.FINAL)
+                .also { typeBuilder ->
+                    for (maskIndex: Int in 0 until ((fields.size + 63) / 64)) {
+                        typeBuilder.addField(ClassName.LONG, "loaded$maskIndex", Modifier.PRIVATE)
+                    }
+                    fields.forEach { field -> typeBuilder.addField(field.type, field.name, Modifier.PRIVATE) }
+                }
+                .addMethod(
+                    MethodSpec.constructorBuilder()
+                        .addModifiers(Modifier.PRIVATE)
+                        .addParameter(ClassName.OBJECT, "raw")
+                        .addParameter(bindingClass, "binding")
+                        .addStatement("this.raw = raw")
+                        .addStatement("this.binding = binding")
+                        .build()
+                )
+                .addMethod(
+                    MethodSpec.methodBuilder("raw")
+                        .addModifiers(Modifier.PUBLIC)
+                        .returns(ClassName.OBJECT)
+                        .addJavadoc("Returns the viewed NMS packet.\n\n")
+                        .addJavadoc("@return the raw (net.minecraft) packet\n")
+                        .addStatement("return raw")
+                        .build()
+                )
+                .also { typeBuilder ->
+                    fields.forEachIndexed { index, field ->
+                        val mask = "loaded${index / 64}"
+                        val bit = maskBit(index)
+                        typeBuilder.addMethod(
+                            MethodSpec.methodBuilder(field.name)
+                                .addModifiers(Modifier.PUBLIC)
+                                .returns(field.type)
+                                .beginControlFlow("if ((\$L & \$L) == 0)", mask, bit)
+                                .readField(reflectClass, methodHandles, field, "this", index)
+                                .addStatement("\$L |= \$L", mask, bit)
+                                .endControlFlow()
+                                .addStatement("return this.${field.name}")
+                                .build()
+                        )
+                        if (presenceBits.containsKey(field.name)) {
+                            typeBuilder.addMethod(
+                                MethodSpec.methodBuilder("has" + field.name.replaceFirstChar(Char::uppercase))
+                                    .addModifiers(Modifier.PUBLIC)
+                                    .returns(ClassName.BOOLEAN)
+                                    .addJavadoc("Returns whether the version-limited {@code ${field.name}} field exists in the viewed packet.\n\n")
+                                    .addJavadoc("@return is the field present?\n")
+                                    .addStatement("return binding.field(\$L) != null", index)
+                                    .build()
+                            )
+                        }
+                    }
+                }
+                .addMethod(
+                    MethodSpec.methodBuilder("materialize")
+                        .addModifiers(Modifier.PUBLIC)
+                        .returns(currentClassName)
+                        .addJavadoc("Reads all fields of the viewed packet into a new packet wrapper.\n\n")
+                        .addJavadoc("@return the packet wrapper\n")
+                        .addStatement("return new \$T(raw, binding.version())", currentClassName)
+                        .build()
+                )
+                .build()
         )
     }
 
+    private fun createPackets(packets: List<ClassName>) {
+        val packetClass: ClassName = ClassName.get(utilsPackageName.get(), "Packet")
+        val registryClass: ClassName = ClassName.get(utilsPackageName.get(), "PacketRegistry")
+        val packetsClass: ClassName = ClassName.get(utilsPackageName.get(), "Packets")
+        val factoryClass: ClassName = registryClass.nestedClass("Factory")
+        val encoderClass: ClassName = registryClass.nestedClass("Encoder")
+        val reportClass: ClassName = ClassName.get(utilsPackageName.get(), "WarmupReport")
+        val bucketClass: ClassName = packetsClass.nestedClass("Bucket")
+        val packetType: TypeName = ParameterizedTypeName.get(ClassName.get(Class::class.java), WildcardTypeName.subtypeOf(packetClass))
+        val classType: TypeName = ParameterizedTypeName.get(ClassName.get(Class::class.java), WildcardTypeName.subtypeOf(Object::class.java))
+        val listType: TypeName = ParameterizedTypeName.get(List::class.java, String::class.java)
+        val futureType: TypeName = ParameterizedTypeName.get(ClassName.get(CompletableFuture::class.java), listType)
+        val tasksType: TypeName = ParameterizedTypeName.get(ClassName.get(Map::class.java), packetType, futureType)
+        val unresolvedType: TypeName = ParameterizedTypeName.get(ClassName.get(Map::class.java), packetType, listType)
+        val unsupportedType: TypeName = ParameterizedTypeName.get(ClassName.get(List::class.java), packetType)
+        JavaFile.builder(
+            utilsPackageName.get(),
+            TypeSpec.classBuilder(packetsClass)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addJavadoc("Batch conversions of packets, the packets are converted grouped by type with a converter resolved once per group.")
+                .addMethod(
+                    MethodSpec.constructorBuilder()
+                        .addModifiers(Modifier.PRIVATE)
+                        .build()
+                )
+                .addMethod(
+                    MethodSpec.methodBuilder("fromNMS")
+                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                        .returns(ArrayTypeName.of(packetClass))
+                        .addParameter(ParameterizedTypeName.get(ClassName.get(List::class.java), WildcardTypeName.subtypeOf(Object::class.java)), "raws")
+                        .addParameter(ClassName.INT, "ver")
+                        .addJavadoc("Wraps the supplied NMS packets.\n\n")
+                        .addJavadoc("@param raws the raw (net.minecraft) packets\n")
+                        .addJavadoc("@param ver the current <strong>server</strong> protocol version\n")
+                        .addJavadoc("@return the packet wrappers, indexed like the NMS packets, null for unsupported packets\n")
+                        .addStatement("final \$T registry = \$T.forVersion(ver)", registryClass, registryClass)
+                        .addStatement("final Object[] input = raws.toArray()")
+                        .addStatement("final \$T[] packets = new \$T[input.length]", packetClass, packetClass)
+                        .addComment("groups the packets by type in one pass, each group is converted with the same factory")
+                        .addStatement("final \$T buckets = new \$T<>()", ParameterizedTypeName.get(ClassName.get(Map::class.java), classType, bucketClass), IdentityHashMap::class.java)
+                        .beginControlFlow("for (int i = 0; i < input.length; i++)")
+                        .beginControlFlow("if (input[i] != null)")
+                        .addStatement("buckets.computeIfAbsent(input[i].getClass(), type -> new \$T()).add(i)", bucketClass)
+                        .endControlFlow()
+                        .endControlFlow()
+                        .beginControlFlow("for (\$T entry : buckets.entrySet())", ParameterizedTypeName.get(ClassName.get(Map.Entry::class.java), classType, bucketClass))
+                        .addStatement("final \$T factory = registry.factory(entry.getKey())", factoryClass)
+                        .addStatement("final \$T bucket = entry.getValue()", bucketClass)
+                        .beginControlFlow("for (int i = 0; i < bucket.size; i++)")
+                        .addStatement("final int index = bucket.indexes[i]")
+                        .addStatement("packets[index] = factory.create(input[index])")
+                        .endControlFlow()
+                        .endControlFlow()
+                        .addStatement("return packets")
+                        .build()
+                )
+                .addMethod(
+                    MethodSpec.methodBuilder("toNMS")
+                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                        .returns(ArrayTypeName.of(Object::class.java))
+                        .addParameter(ParameterizedTypeName.get(ClassName.get(Collection::class.java), WildcardTypeName.subtypeOf(packetClass)), "packets")
+                        .addParameter(ClassName.INT, "ver")
+                        .addJavadoc("Converts the supplied packet wrappers to NMS packets.\n\n")
+                        .addJavadoc("@param packets the packet wrappers\n")
+                        .addJavadoc("@param ver the current <strong>server</strong> protocol version\n")
+                        .addJavadoc("@return the raw (net.minecraft) packets, in iteration order of the packet wrappers\n")
+                        .addStatement("final \$T registry = \$T.forVersion(ver)", registryClass, registryClass)
+                        .addStatement("final \$T[] input = packets.toArray(new \$T[0])", packetClass, packetClass)
+                        .addStatement("final Object[] raws = new Object[input.length]")
+                        .addComment("groups the packets by type in one pass, each group is converted with the same encoder")
+                        .addStatement("final \$T buckets = new \$T<>()", ParameterizedTypeName.get(ClassName.get(Map::class.java), packetType, bucketClass), IdentityHashMap::class.java)
+                        .beginControlFlow("for (int i = 0; i < input.length; i++)")
+                        .beginControlFlow("if (input[i] != null)")
+                        .addStatement("buckets.computeIfAbsent(input[i].getClass(), type -> new \$T()).add(i)", bucketClass)
+                        .endControlFlow()
+                        .endControlFlow()
+                        .beginControlFlow("for (\$T entry : buckets.entrySet())", ParameterizedTypeName.get(ClassName.get(Map.Entry::class.java), packetType, bucketClass))
+                        .addStatement("final \$T encoder = registry.encoder(entry.getKey())", encoderClass)
+                        .addStatement("final \$T bucket = entry.getValue()", bucketClass)
+                        .beginControlFlow("for (int i = 0; i < bucket.size; i++)")
+                        .addStatement("final int index = bucket.indexes[i]")
+                        .addStatement("raws[index] = encoder.toNMS(input[index])")
+                        .endControlFlow()
+                        .endControlFlow()
+                        .addStatement("return raws")
+                        .build()
+                )
+                .addMethod(
+                    MethodSpec.methodBuilder("warmup")
+                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                        .returns(reportClass)
+                        .addParameter(ClassName.INT, "ver")
+                        .addJavadoc("Resolves the NMS members of all packet wrappers in parallel on the common fork-join pool.\n\n")
+                        .addJavadoc("@param ver the current <strong>server</strong> protocol version\n")
+                        .addJavadoc("@return the warm-up report\n")
+                        .addStatement("return warmup(ver, \$T.commonPool())", ForkJoinPool::class.java)
+                        .build()
+                )
+                .addMethod(
+                    MethodSpec.methodBuilder("warmup")
+                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                        .returns(reportClass)
+                        .addParameter(ClassName.INT, "ver")
+                        .addParameter(Executor::class.java, "executor")
+                        .addJavadoc("Resolves the NMS members of all packet wrappers in parallel, so that the first conversions don't pay for it.\n")
+                        .addJavadoc("<p>\nBlocks until all packet wrappers are resolved, the executor may be e.g. a virtual thread per task executor.\n\n")
+                        .addJavadoc("@param ver the current <strong>server</strong> protocol version\n")
+                        .addJavadoc("@param executor the executor to resolve the packet wrappers on\n")
+                        .addJavadoc("@return the warm-up report\n")
+                        .addStatement("final long start = System.nanoTime()")
+                        .addStatement("final \$T tasks = new \$T<>()", tasksType, LinkedHashMap::class.java)
+                        .also { methodBuilder ->
+                            packets.forEach { packet ->
+                                methodBuilder.addStatement("tasks.put(\$T.class, \$T.supplyAsync(() -> \$T.warmup(ver), executor))", packet, CompletableFuture::class.java, packet)
+                            }
+                        }
+                        .addStatement("final \$T unresolved = new \$T<>()", unresolvedType, LinkedHashMap::class.java)
+                        .addStatement("final \$T unsupported = new \$T<>()", unsupportedType, ArrayList::class.java)
+                        .beginControlFlow("for (\$T entry : tasks.entrySet())", ParameterizedTypeName.get(ClassName.get(Map.Entry::class.java), packetType, futureType))
+                        .addStatement("\$T members", listType)
+                        .beginControlFlow("try")
+                        .addStatement("members = entry.getValue().join()")
+                        .nextControlFlow("catch (\$T e)", CompletionException::class.java)
+                        .addStatement("members = \$T.singletonList(String.valueOf(e.getCause()))", Collections::class.java)
+                        .endControlFlow()
+                        .beginControlFlow("if (members == null)")
+                        .addStatement("unsupported.add(entry.getKey())")
+                        .nextControlFlow("else if (!members.isEmpty())")
+                        .addStatement("unresolved.put(entry.getKey(), members)")
+                        .endControlFlow()
+                        .endControlFlow()
+                        .addStatement("\$T.forVersion(ver)", registryClass)
+                        .addStatement("return new \$T(ver, unresolved, unsupported, System.nanoTime() - start)", reportClass)
+                        .build()
+                )
+                .addType(
+                    TypeSpec.classBuilder(bucketClass)
+                        .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                        .addJavadoc("The indexes of the packets of a single type in a batch.")
+                        .addField(
+                            FieldSpec.builder(ArrayTypeName.of(ClassName.INT), "indexes", Modifier.PRIVATE)
+                                .initializer("new int[8]")
+                                .build()
+                        )
+                        .addField(ClassName.INT, "size", Modifier.PRIVATE)
+                        .addMethod(
+                            MethodSpec.methodBuilder("add")
+                                .addModifiers(Modifier.PRIVATE)
+                                .addParameter(ClassName.INT, "index")
+                                .beginControlFlow("if (size == indexes.length)")
+                                .addStatement("indexes = \$T.copyOf(indexes, size * 2)", Arrays::class.java)
+                                .endControlFlow()
+                                .addStatement("indexes[size++] = index")
+                                .build()
+                        )
+                        .build()
+                )
+                .build()
+        )
+            .indent("    ") // 4 space indent
+            .addFileComment("This file was generated with tinyprotocol2. Do not edit, changes will be overwritten!")
+            .skipJavaLangImports(true)
+            .build()
+            .writeToFile(outputDirectory.get().asFile)
+        logger.log(LogLevel.LIFECYCLE, "Wrote ${packetsClass.simpleName()}.")
+    }
+
+    private fun createProtocols(protocolVersions: List<Int>) {
+        val protocolsClass: ClassName = ClassName.get(utilsPackageName.get(), "Protocols")
+        JavaFile.builder(
+            utilsPackageName.get(),
+            TypeSpec.classBuilder(protocolsClass)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addJavadoc("The protocol versions known at generation time, used to index the per-version caches.")
+                .addField(
+                    FieldSpec.builder(ClassName.INT, "COUNT", Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                        .initializer("\$L", protocolVersions.size)
+                        .build()
+                )
+                .addMethod(
+                    MethodSpec.constructorBuilder()
+                        .addModifiers(Modifier.PRIVATE)
+                        .build()
+                )
+                .addMethod(
+                    MethodSpec.methodBuilder("index")
+                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                        .returns(ClassName.INT)
+                        .addParameter(ClassName.INT, "ver")
+                        .addJavadoc("Returns the cache index of the supplied protocol version.\n\n")
+                        .addJavadoc("@param ver the protocol version\n")
+                        .addJavadoc("@return the index, -1 if the version wasn't known at generation time\n")
+                        .beginControlFlow("switch (ver)")
+                        .also { methodBuilder ->
+                            protocolVersions.forEachIndexed { index, ver ->
+                                methodBuilder.addCode("case \$L:\n\$>", ver)
+                                    .addStatement("return \$L", index)
+                                    .addCode("\$<")
+                            }
+                        }
+                        .addCode("default:\n\$>")
+                        .addStatement("return -1")
+                        .addCode("\$<")
+                        .endControlFlow()
+                        .build()
+                )
+                .build()
+        )
+            .indent("    ") // 4 space indent
+            .addFileComment("This file was generated with tinyprotocol2. Do not edit, changes will be overwritten!")
+            .skipJavaLangImports(true)
+            .build()
+            .writeToFile(outputDirectory.get().asFile)
+        logger.log(LogLevel.LIFECYCLE, "Wrote ${protocolsClass.simpleName()}.")
+    }
+
+    private fun createPacketRegistry(packets: List<ClassName>) {
+        val packetClass: ClassName = ClassName.get(utilsPackageName.get(), "Packet")
+        val registryClass: ClassName = ClassName.get(utilsPackageName.get(), "PacketRegistry")
+        val factoryClass: ClassName = registryClass.nestedClass("Factory")
+        val encoderClass: ClassName = registryClass.nestedClass("Encoder")
+        val entryClass: ClassName = registryClass.nestedClass("Entry")
+        val bindingClass: ClassName = ClassName.get(utilsPackageName.get(), "Binding")
+        val typeVariable: TypeVariableName = TypeVariableName.get("T", packetClass)
+        val wrapperType: TypeName = ParameterizedTypeName.get(ClassName.get(Class::class.java), WildcardTypeName.subtypeOf(packetClass))
+        val classType: TypeName = ParameterizedTypeName.get(ClassName.get(Class::class.java), WildcardTypeName.subtypeOf(Object::class.java))
+        JavaFile.builder(
+            utilsPackageName.get(),
+            TypeSpec.classBuilder(registryClass)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addJavadoc("A registry of the packet wrappers available in a single protocol version, keyed by the NMS packet class.")
+                .addField(
+                    FieldSpec.builder(entryClass, "NONE", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                        .initializer("new \$T(null, raw -> null, null)", entryClass)
+                        .build()
+                )
+                .addField(
+                    FieldSpec.builder(ArrayTypeName.of(registryClass), "REGISTRIES", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                        .initializer("new \$T[\$T.COUNT]", registryClass, ClassName.get(utilsPackageName.get(), "Protocols"))
+                        .build()
+                )
+                .addField(
+                    FieldSpec.builder(ParameterizedTypeName.get(ClassName.get(Map::class.java), ClassName.INT.box(), registryClass), "UNKNOWN_REGISTRIES", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                        .initializer("new \$T<>()", ConcurrentHashMap::class.java)
+                        .build()
+                )
+                .addField(ClassName.INT, "version", Modifier.PRIVATE, Modifier.FINAL)
+                .addField(ParameterizedTypeName.get(ClassName.get(Map::class.java), classType, entryClass), "byClass", Modifier.PRIVATE, Modifier.FINAL)
+                .addField(ParameterizedTypeName.get(ClassName.get(Map::class.java), wrapperType, entryClass), "byType", Modifier.PRIVATE, Modifier.FINAL)
+                .addField(
+                    FieldSpec.builder(ParameterizedTypeName.get(ClassName.get(ClassValue::class.java), entryClass), "entries", Modifier.PRIVATE, Modifier.FINAL)
+                        .initializer(
+                            CodeBlock.builder()
+                                .add("new \$T<\$T>() {\n\$>", ClassValue::class.java, entryClass)
+                                .add("@\$T\n", Override::class.java)
+                                .add("protected \$T computeValue(\$T type) {\n\$>", entryClass, classType)
+                                .add("// subclasses of the NMS packets are wrapped too\n")
+                                .beginControlFlow("for (Class<?> clazz = type; clazz != null; clazz = clazz.getSuperclass())")
+                                .addStatement("final \$T entry = byClass.get(clazz)", entryClass)
+                                .beginControlFlow("if (entry != null)")
+                                .addStatement("return entry")
+                                .endControlFlow()
+                                .endControlFlow()
+                                .addStatement("return NONE")
+                                .add("\$<}\n")
+                                .add("\$<}")
+                                .build()
+                        )
+                        .build()
+                )
+                .addMethod(
+                    MethodSpec.constructorBuilder()
+                        .addModifiers(Modifier.PRIVATE)
+                        .addParameter(ClassName.INT, "version")
+                        .addStatement("this.version = version")
+                        .addStatement("this.byClass = new \$T<>()", HashMap::class.java)
+                        .addStatement("this.byType = new \$T<>()", HashMap::class.java)
+                        .also { methodBuilder ->
+                            packets.forEach { packet ->
+                                when {
+                                    // the specialized converters don't record metrics, the instrumented wrapper methods are used instead
+                                    specializeVersions.get() && generateInstrumentation.get() ->
+                                        methodBuilder.addStatement("register(\$T.class, \$T.binding(version), \$T::new, (packet, binding) -> packet.toNMS(binding.version()))", packet, packet, packet)
+                                    // the converters are only available in the versions that have the packet
+                                    specializeVersions.get() ->
+                                        methodBuilder.beginControlFlow("if (\$T.binding(version).nmsClass() != null)", packet)
+                                            .addStatement("register(\$T.class, \$T.binding(version), \$T::new, \$T.converter(version))", packet, packet, packet, packet)
+                                            .endControlFlow()
+                                    else ->
+                                        methodBuilder.addStatement("register(\$T.class, \$T.binding(version), \$T::new, \$T::toNMS)", packet, packet, packet, packet)
+                                }
+                            }
+                        }
+                        .build()
+                )
+                .addMethod(
+                    MethodSpec.methodBuilder("forVersion")
+                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                        .returns(registryClass)
+                        .addParameter(ClassName.INT, "ver")
+                        .addJavadoc("Returns the registry of the supplied protocol version.\n")
+                        .addJavadoc("<p>\nThe registry is created once per protocol version and reused by all subsequent calls with that version.\n\n")
+                        .addJavadoc("@param ver the current <strong>server</strong> protocol version\n")
+                        .addJavadoc("@return the registry\n")
+                        .addStatement("final int index = \$T.index(ver)", ClassName.get(utilsPackageName.get(), "Protocols"))
+                        .beginControlFlow("if (index == -1)")
+                        .addStatement("return UNKNOWN_REGISTRIES.computeIfAbsent(ver, \$T::new)", registryClass)
+                        .endControlFlow()
+                        .addStatement("\$T registry = REGISTRIES[index]", registryClass)
+                        .beginControlFlow("if (registry == null)")
+                        .addStatement("REGISTRIES[index] = registry = new \$T(ver)", registryClass)
+                        .endControlFlow()
+                        .addStatement("return registry")
+                        .build()
+                )
+                .addMethod(
+                    MethodSpec.methodBuilder("register")
+                        .addModifiers(Modifier.PRIVATE)
+                        .addTypeVariable(typeVariable)
+                        .addParameter(ParameterizedTypeName.get(ClassName.get(Class::class.java), typeVariable), "type")
+                        .addParameter(bindingClass, "binding")
+                        .addParameter(ParameterizedTypeName.get(ClassName.get(BiFunction::class.java), ClassName.OBJECT, bindingClass, typeVariable), "factory")
+                        .addParameter(ParameterizedTypeName.get(ClassName.get(BiFunction::class.java), typeVariable, bindingClass, ClassName.OBJECT), "encoder")
+                        .addStatement("register(type, binding.nmsClass(), raw -> factory.apply(raw, binding), packet -> encoder.apply(type.cast(packet), binding))")
+                        .build()
+                )
+                .also { typeBuilder ->
+                    if (specializeVersions.get()) {
+                        typeBuilder.addMethod(
+                            MethodSpec.methodBuilder("register")
+                                .addModifiers(Modifier.PRIVATE)
+                                .addTypeVariable(typeVariable)
+                                .addParameter(ParameterizedTypeName.get(ClassName.get(Class::class.java), typeVariable), "type")
+                                .addParameter(bindingClass, "binding")
+                                .addParameter(ParameterizedTypeName.get(ClassName.get(BiFunction::class.java), ClassName.OBJECT, bindingClass, typeVariable), "factory")
+                                .addParameter(ParameterizedTypeName.get(ClassName.get(utilsPackageName.get(), "Converter"), typeVariable), "converter")
+                                .addStatement("register(type, binding.nmsClass(), raw -> factory.apply(raw, binding), packet -> converter.toNMS(type.cast(packet)))")
+                                .build()
+                        )
+                    }
+                }
+                .addMethod(
+                    MethodSpec.methodBuilder("register")
+                        .addModifiers(Modifier.PRIVATE)
+                        .addParameter(wrapperType, "type")
+                        .addParameter(classType, "nmsClass")
+                        .addParameter(factoryClass, "factory")
+                        .addParameter(encoderClass, "encoder")
+                        .beginControlFlow("if (nmsClass != null)")
+                        .addStatement("final \$T entry = new \$T(type, factory, encoder)", entryClass, entryClass)
+                        .addStatement("byClass.put(nmsClass, entry)")
+                        .addStatement("byType.put(type, entry)")
+                        .endControlFlow()
+                        .build()
+                )
+                .addMethod(
+                    MethodSpec.methodBuilder("version")
+                        .addModifiers(Modifier.PUBLIC)
+                        .returns(ClassName.INT)
+                        .addJavadoc("Returns the protocol version this registry was created for.\n\n")
+                        .addJavadoc("@return the protocol version\n")
+                        .addStatement("return version")
+                        .build()
+                )
+                .addMethod(
+                    MethodSpec.methodBuilder("wrap")
+                        .addModifiers(Modifier.PUBLIC)
+                        .returns(packetClass)
+                        .addParameter(ClassName.OBJECT, "raw")
+                        .addJavadoc("Wraps the supplied NMS packet in its packet wrapper.\n\n")
+                        .addJavadoc("@param raw the raw (net.minecraft) packet\n")
+                        .addJavadoc("@return the packet wrapper, null if the packet has no wrapper\n")
+                        .beginControlFlow("if (raw == null)")
+                        .addStatement("return null")
+                        .endControlFlow()
+                        .addStatement("return entries.get(raw.getClass()).factory.create(raw)")
+                        .build()
+                )
+                .addMethod(
+                    MethodSpec.methodBuilder("factory")
+                        .returns(factoryClass)
+                        .addParameter(classType, "nmsClass")
+                        .addJavadoc("Returns the packet wrapper factory of the supplied NMS packet class, resolved for the protocol version of this registry.\n\n")
+                        .addJavadoc("@param nmsClass the NMS packet class\n")
+                        .addJavadoc("@return the factory, creates null wrappers if the class has no wrapper\n")
+                        .addStatement("return entries.get(nmsClass).factory")
+                        .build()
+                )
+                .addMethod(
+                    MethodSpec.methodBuilder("encoder")
+                        .returns(encoderClass)
+                        .addParameter(wrapperType, "type")
+                        .addJavadoc("Returns the NMS packet encoder of the supplied packet wrapper class, resolved for the protocol version of this registry.\n\n")
+                        .addJavadoc("@param type the packet wrapper class\n")
+                        .addJavadoc("@return the encoder\n")
+                        .addStatement("final \$T entry = byType.get(type)", entryClass)
+                        .addComment("wrappers unsupported in this version fail like their own toNMS call")
+                        .addStatement("return entry != null ? entry.encoder : packet -> packet.toNMS(version)")
+                        .build()
+                )
+                .addMethod(
+                    MethodSpec.methodBuilder("isRegistered")
+                        .addModifiers(Modifier.PUBLIC)
+                        .returns(ClassName.BOOLEAN)
+                        .addParameter(classType, "nmsClass")
+                        .addJavadoc("Checks whether the supplied NMS packet class has a packet wrapper.\n\n")
+                        .addJavadoc("@param nmsClass the NMS packet class\n")
+                        .addJavadoc("@return does the class have a packet wrapper?\n")
+                        .addStatement("return entries.get(nmsClass) != NONE")
+                        .build()
+                )
+                .addMethod(
+                    MethodSpec.methodBuilder("wrapperClass")
+                        .addModifiers(Modifier.PUBLIC)
+                        .returns(wrapperType)
+                        .addParameter(classType, "nmsClass")
+                        .addJavadoc("Returns the packet wrapper class of the supplied NMS packet class.\n\n")
+                        .addJavadoc("@param nmsClass the NMS packet class\n")
+                        .addJavadoc("@return the packet wrapper class, null if the class has no wrapper\n")
+                        .addStatement("return entries.get(nmsClass).type")
+                        .build()
+                )
+                .addType(
+                    TypeSpec.interfaceBuilder(factoryClass)
+                        .addModifiers(Modifier.PUBLIC)
+                        .addAnnotation(FunctionalInterface::class.java)
+                        .addJavadoc("A packet wrapper factory.")
+                        .addMethod(
+                            MethodSpec.methodBuilder("create")
+                                .addModifiers(Modifier.PUBLIC, Modifier.ABSTRACT)
+                                .returns(packetClass)
+                                .addParameter(ClassName.OBJECT, "raw")
+                                .addJavadoc("Wraps the supplied NMS packet.\n\n")
+                                .addJavadoc("@param raw the raw (net.minecraft) packet\n")
+                                .addJavadoc("@return the packet wrapper\n")
+                                .build()
+                        )
+                        .build()
+                )
+                .addType(
+                    TypeSpec.interfaceBuilder(encoderClass)
+                        .addModifiers(Modifier.PUBLIC)
+                        .addAnnotation(FunctionalInterface::class.java)
+                        .addJavadoc("A NMS packet encoder of a single packet wrapper type.")
+                        .addMethod(
+                            MethodSpec.methodBuilder("toNMS")
+                                .addModifiers(Modifier.PUBLIC, Modifier.ABSTRACT)
+                                .returns(ClassName.OBJECT)
+                                .addParameter(packetClass, "packet")
+                                .addJavadoc("Converts the supplied packet wrapper to a NMS packet.\n\n")
+                                .addJavadoc("@param packet the packet wrapper\n")
+                                .addJavadoc("@return the raw (net.minecraft) packet\n")
+                                .build()
+                        )
+                        .build()
+                )
+                .addType(
+                    TypeSpec.classBuilder(entryClass)
+                        .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                        .addField(wrapperType, "type", Modifier.PRIVATE, Modifier.FINAL)
+                        .addField(factoryClass, "factory", Modifier.PRIVATE, Modifier.FINAL)
+                        .addField(encoderClass, "encoder", Modifier.PRIVATE, Modifier.FINAL)
+                        .addMethod(
+                            MethodSpec.constructorBuilder()
+                                .addModifiers(Modifier.PRIVATE)
+                                .addParameter(wrapperType, "type")
+                                .addParameter(factoryClass, "factory")
+                                .addParameter(encoderClass, "encoder")
+                                .addStatement("this.type = type")
+                                .addStatement("this.factory = factory")
+                                .addStatement("this.encoder = encoder")
+                                .build()
+                        )
+                        .build()
+                )
+                .build()
+        )
+            .indent("    ") // 4 space indent
+            .addFileComment("This file was generated with tinyprotocol2. Do not edit, changes will be overwritten!")
+            .skipJavaLangImports(true)
+            .build()
+            .writeToFile(outputDirectory.get().asFile)
+        logger.log(LogLevel.LIFECYCLE, "Wrote ${registryClass.simpleName()}.")
+    }
+
+    private fun createPacketFactory(packets: List<ClassName>) {
+        val packetClass: ClassName = ClassName.get(utilsPackageName.get(), "Packet")
+        val factoryClass: ClassName = ClassName.get(utilsPackageName.get(), "PacketFactory")
+        val converterClass: ClassName = ClassName.get(utilsPackageName.get(), "Converter")
+        val typeVariable: TypeVariableName = TypeVariableName.get("T", packetClass)
+        val keyType: TypeName = ParameterizedTypeName.get(ClassName.get(Class::class.java), WildcardTypeName.subtypeOf(packetClass))
+        val valueType: TypeName = ParameterizedTypeName.get(converterClass, WildcardTypeName.subtypeOf(packetClass))
+        JavaFile.builder(
+            utilsPackageName.get(),
+            TypeSpec.classBuilder(factoryClass)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addJavadoc("A factory of packet wrapper conversion implementations specialized for a single protocol version.\n")
+                .addJavadoc("<p>\nThe factory is meant to be created once at startup, when the server protocol version is known.")
+                .addField(ClassName.INT, "version", Modifier.PRIVATE, Modifier.FINAL)
+                .addField(
+                    FieldSpec.builder(ParameterizedTypeName.get(ClassName.get(Map::class.java), keyType, valueType), "converters", Modifier.PRIVATE, Modifier.FINAL)
+                        .initializer("new \$T<>()", HashMap::class.java)
+                        .build()
+                )
+                .addMethod(
+                    MethodSpec.constructorBuilder()
+                        .addModifiers(Modifier.PRIVATE)
+                        .addParameter(ClassName.INT, "version")
+                        .addStatement("this.version = version")
+                        .also { methodBuilder ->
+                            packets.forEach { packet ->
+                                methodBuilder.beginControlFlow("if (\$T.binding(version).nmsClass() != null)", packet)
+                                    .addStatement("converters.put(\$T.class, \$T.converter(version))", packet, packet)
+                                    .endControlFlow()
+                            }
+                        }
+                        .build()
+                )
+                .addMethod(
+                    MethodSpec.methodBuilder("forVersion")
+                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                        .returns(factoryClass)
+                        .addParameter(ClassName.INT, "ver")
+                        .addJavadoc("Creates a factory with the conversion implementations for the supplied protocol version.\n\n")
+                        .addJavadoc("@param ver the current <strong>server</strong> protocol version\n")
+                        .addJavadoc("@return the factory\n")
+                        .addStatement("return new \$T(ver)", factoryClass)
+                        .build()
+                )
+                .addMethod(
+                    MethodSpec.methodBuilder("version")
+                        .addModifiers(Modifier.PUBLIC)
+                        .returns(ClassName.INT)
+                        .addJavadoc("Returns the protocol version this factory was created for.\n\n")
+                        .addJavadoc("@return the protocol version\n")
+                        .addStatement("return version")
+                        .build()
+                )
+                .addMethod(
+                    MethodSpec.methodBuilder("converter")
+                        .addModifiers(Modifier.PUBLIC)
+                        .addTypeVariable(typeVariable)
+                        .returns(ParameterizedTypeName.get(converterClass, typeVariable))
+                        .addParameter(ParameterizedTypeName.get(ClassName.get(Class::class.java), typeVariable), "type")
+                        .addAnnotation(AnnotationSpec.builder(SuppressWarnings::class.java).addMember("value", "\$S", "unchecked").build())
+                        .addJavadoc("Returns the conversion implementation of the supplied packet wrapper type.\n\n")
+                        .addJavadoc("@param type the packet wrapper type\n")
+                        .addJavadoc("@param <T> the packet wrapper type\n")
+                        .addJavadoc("@return the converter, null if the packet is not available in this version\n")
+                        .addStatement("return (\$T) converters.get(type)", ParameterizedTypeName.get(converterClass, typeVariable))
+                        .build()
+                )
+                .build()
+        )
+            .indent("    ") // 4 space indent
+            .addFileComment("This file was generated with tinyprotocol2. Do not edit, changes will be overwritten!")
+            .skipJavaLangImports(true)
+            .build()
+            .writeToFile(outputDirectory.get().asFile)
+        logger.log(LogLevel.LIFECYCLE, "Wrote ${factoryClass.simpleName()}.")
+    }
+
+    private fun createMappingsTable(protocolVersions: List<Int>, columns: List<Map<Int, String>>): MethodSpec {
+        // row -> versions, identical rows share a case label
+        val rows: MutableMap<List<String?>, MutableList<Int>> = linkedMapOf()
+        protocolVersions.distinct().forEach { ver ->
+            rows.getOrPut(columns.map { it[ver] }) { mutableListOf() }.add(ver)
+        }
+        return MethodSpec.methodBuilder("mappings")
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+            .returns(ArrayTypeName.of(String::class.java))
+            .addParameter(ClassName.INT, "ver")
+            .addJavadoc("Returns the obfuscated names of this packet's members for the supplied protocol version, precomputed at build time.\n")
+            .addJavadoc("<p>\nThe order is: packet class, FriendlyByteBuf class, read method, write method, fields (in declaration order).\n\n")
+            .addJavadoc("@param ver the current <strong>server</strong> protocol version\n")
+            .addJavadoc("@return the mappings, a null element means the member is not available in the version\n")
+            .beginControlFlow("switch (ver)")
+            .also { methodBuilder ->
+                rows.forEach { (row, versions) ->
+                    versions.forEach { methodBuilder.addCode("case \$L:\n", it) }
+                    methodBuilder.addCode("\$>")
+                        .addStatement("return new String[] {\$L}", CodeBlock.join(row.map { if (it == null) CodeBlock.of("null") else CodeBlock.of("\$S", it) }, ", "))
+                        .addCode("\$<")
+                }
+            }
+            .addCode("default:\n\$>")
+            .addStatement("return new String[\$L]", columns.size)
+            .addCode("\$<")
+            .endControlFlow()
+            .build()
+    }
+
+    private fun versionMappings(tree: ClassAncestorTree, protocolVersions: List<Int>): Map<Int, String> {
+        // version -> obfuscated
+        val mapped: MutableMap<Int, String> = mutableMapOf()
+        tree.classes.forEachIndexed { index, element ->
+            mapped.putIfAbsent(protocolVersions[index + tree.offset], element.mapped(MappingType.SPIGOT) ?: element.original)
+        }
+        return mapped
+    }
+
+    private fun versionMappings(tree: DescriptableAncestorTree, protocolVersions: List<Int>): Map<Int, String> {
+        // version -> obfuscated
+        val mapped: MutableMap<Int, String> = mutableMapOf()
+        tree.descriptables.forEachIndexed { index, element ->
+            mapped.putIfAbsent(protocolVersions[index + tree.offset], element.mapped(MappingType.SPIGOT) ?: element.original)
+        }
+        return mapped
+    }
+
     private fun joinMappings(tree: ClassAncestorTree, protocolVersions: List<Int>): String {
         // obfuscated -> versions
         val joined: MutableMap<String, MutableList<Int>> = mutableMapOf()
@@ -24,20 +24,55 @@
 
 package me.kcra.tinyprotocol.tasks
 
-import me.kcra.acetylene.core.TypedMappingFile
-import me.kcra.acetylene.core.utils.Pair
-import me.kcra.acetylene.srgutils.SrgUtilsMappingLoader
-import me.kcra.tinyprotocol.TinyProtocolPluginExtension
 import me.kcra.tinyprotocol.utils.*
 import net.minecraftforge.srgutils.IMappingFile
 import org.gradle.api.DefaultTask
+import org.gradle.api.file.DirectoryProperty
+import org.gradle.api.file.RegularFileProperty
 import org.gradle.api.logging.LogLevel
-import org.gradle.api.tasks.TaskAction
+import org.gradle.api.provider.MapProperty
+import org.gradle.api.provider.Property
+import org.gradle.api.provider.Provider
+import org.gradle.api.provider.SetProperty
+import org.gradle.api.tasks.*
+import org.gradle.work.DisableCachingByDefault
 import java.io.File
-import java.nio.file.Path
-import javax.inject.Inject
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+
+@DisableCachingByDefault(because = "Downloads and parses the mappings, not worth caching")
+abstract class PrepareMappingsTask : DefaultTask() {
+    @get:Input
+    abstract val versions: SetProperty<String>
+
+    @get:Internal
+    abstract val localMappings: MapProperty<String, File>
+
+    @get:Input
+    val localMappingNames: Provider<Map<String, String>>
+        get() = localMappings.map { it.mapValues { entry -> entry.value.name } }
+
+    @get:InputFiles
+    @get:PathSensitive(PathSensitivity.NAME_ONLY)
+    val localMappingFiles: Provider<Collection<File>>
+        get() = localMappings.map { it.values }
+
+    @get:Input
+    abstract val verifyChecksums: Property<Boolean>
+
+    @get:Input
+    abstract val cacheMappings: Property<Boolean>
+
+    // downloads and parsed mappings
+    @get:OutputDirectory
+    abstract val workFolder: DirectoryProperty
+
+    // version -> (mapping type name -> parsed mapping path), read by the generatePackets task
+    @get:OutputFile
+    abstract val manifest: RegularFileProperty
 
-abstract class PrepareMappingsTask @Inject constructor(private val extension: TinyProtocolPluginExtension) : DefaultTask() {
     init {
         group = "protocol"
         description = "Prepares mappings for all selected versions."
@@ -45,22 +80,63 @@ abstract class PrepareMappingsTask @Inject constructor(private val extension: Ti
 
     @TaskAction
     fun run() {
-        val workFolder: File = Path.of(project.buildDir.absolutePath, "tinyprotocol").toFile().also { it.mkdirs() }
-        val files: MutableList<TypedMappingFile> = mutableListOf()
-        for (ver: String in extension.versions.keys) {
-            files.add(
-                SrgUtilsMappingLoader.of(
+        val workFolder: File = workFolder.get().asFile.also { it.mkdirs() }
+        val manifestFile: File = manifest.get().asFile
+        val verifyChecksums: Boolean = verifyChecksums.get()
+        val reuse: Boolean = cacheMappings.get()
+        val localMappings: Map<String, File> = localMappings.get()
+        val cacheFolder = File(workFolder, "cache")
+        // paths are relative to the manifest, so it doesn't change with the project location
+        fun prepare(source: File, name: String, loader: (File) -> IMappingFile): String =
+            prepareMapping(source, name, cacheFolder, reuse, loader).relativeTo(manifestFile.parentFile).invariantSeparatorsPath
+
+        // every version has up to 4 sources to download and parse, all of them are prepared concurrently
+        val executor: ExecutorService = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors().coerceAtMost(versions.get().size * 4).coerceAtLeast(1)
+        )
+        try {
+            val futures: Map<String, Map<String, CompletableFuture<String?>>> = versions.get().associateWith { ver ->
+                val localMapping: File? = localMappings[ver]
+                if (localMapping != null) {
+                    // local mojang mappings only, nothing is downloaded
+                    mapOf(
+                        "MOJANG" to CompletableFuture.supplyAsync({ prepare(localMapping, "local_$ver") { IMappingFile.load(it).reverse() } }, executor)
+                    )
+                } else {
                     // order matters
-                    Pair.of(MappingType.MOJANG, minecraftResource(ver, "server_mappings", workFolder, extension.verifyChecksums)?.let { IMappingFile.load(it).reverse() }),
-                    Pair.of(MappingType.INTERMEDIARY, intermediaryMapping(ver, workFolder, extension.verifyChecksums)),
-                    Pair.of(MappingType.SEARGE, seargeMapping(ver, workFolder, extension.verifyChecksums)?.let { IMappingFile.load(it) }),
-                    Pair.of(MappingType.SPIGOT, spigotMapping(ver, workFolder, extension.verifyChecksums))
-                ).loadTyped()
-            )
-            logger.log(LogLevel.LIFECYCLE, "Loaded mappings for $ver.")
-        }
-        project.tasks.withType(GeneratePacketsTask::class.java) {
-            it.mappings = files
+                    mapOf(
+                        "MOJANG" to CompletableFuture.supplyAsync({
+                            minecraftResource(ver, "server_mappings", workFolder, verifyChecksums)
+                                ?.let { file -> prepare(file, "server_mappings_$ver") { IMappingFile.load(it).reverse() } }
+                        }, executor),
+                        "INTERMEDIARY" to CompletableFuture.supplyAsync({
+                            intermediaryMapping(ver, workFolder, verifyChecksums)?.let { file -> prepare(file, "intermediary_$ver") { IMappingFile.load(it) } }
+                        }, executor),
+                        "SEARGE" to CompletableFuture.supplyAsync({
+                            seargeMapping(ver, workFolder, verifyChecksums)
+                                ?.let { file -> prepare(file, "searge_$ver") { openSeargeMapping(it).use(IMappingFile::load) } }
+                        }, executor),
+                        "SPIGOT" to CompletableFuture.supplyAsync({
+                            spigotMapping(ver, workFolder, verifyChecksums)?.let { file -> prepare(file, "spigot_$ver") { IMappingFile.load(it) } }
+                        }, executor)
+                    )
+                }
+            }
+            // collected in the declaration order of the versions, regardless of the completion order
+            val prepared: MutableMap<String, Map<String, String?>> = linkedMapOf()
+            futures.forEach { (ver, sources) ->
+                prepared[ver] = sources.mapValues { (_, future) ->
+                    try {
+                        future.join()
+                    } catch (e: CompletionException) {
+                        throw e.cause ?: e
+                    }
+                }
+                logger.log(LogLevel.LIFECYCLE, "Prepared mappings for $ver.")
+            }
+            MAPPER.writerWithDefaultPrettyPrinter().writeValue(manifestFile, prepared)
+        } finally {
+            executor.shutdownNow()
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,208 @@
+/*
+ * This file is part of tinyprotocol2, licensed under the MIT License.
+ *
+ * Copyright (c) 2022 Matouš Kučera
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.kcra.tinyprotocol.utils
+
+import com.fasterxml.jackson.module.kotlin.readValue
+import me.kcra.acetylene.core.TypedMappingFile
+import me.kcra.acetylene.core.utils.Identifier
+import me.kcra.acetylene.core.utils.Pair
+import me.kcra.acetylene.srgutils.SrgUtilsMappingLoader
+import net.minecraftforge.srgutils.IMappingBuilder
+import net.minecraftforge.srgutils.IMappingFile
+import java.io.*
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.nio.file.StandardOpenOption
+import java.security.MessageDigest
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+
+// "TPMC" + format revision, bump the revision when the layout changes
+private const val CACHE_MAGIC: Int = 0x54504d43
+private const val CACHE_REVISION: Int = 2
+
+/**
+ * Parses a mapping file into a binary entry in the cache folder, the source is only parsed if it changed since the last call.
+ *
+ * The entry is named after the supplied name, the format revision and the SHA-1 checksum of the source,
+ * so entries of an older format are never reused, stale entries of the same name are removed when a new one is written.
+ *
+ * @param source the raw mapping source
+ * @param name the entry name, unique per source
+ * @param cacheFolder the cache folder
+ * @param reuse should an existing entry be reused? the source is parsed again if false
+ * @param loader the source parser
+ * @return the entry, readable with [readMappingCache]
+ */
+fun prepareMapping(source: File, name: String, cacheFolder: File, reuse: Boolean, loader: (File) -> IMappingFile): File {
+    val cacheFile: File = newFile("$name-r$CACHE_REVISION-${getFileChecksum(MessageDigest.getInstance("SHA-1"), source)}.bin", cacheFolder)
+    if (reuse && cacheFile.isFile && hasCacheHeader(cacheFile)) {
+        return cacheFile
+    }
+    val mappings: IMappingFile = loader(source)
+    cacheFolder.listFiles { file -> file.name.startsWith("$name-") && file.name.endsWith(".bin") }?.forEach { it.delete() }
+    writeMappingCache(cacheFile, mappings)
+    return cacheFile
+}
+
+/**
+ * Loads the typed mappings of all versions in a manifest written by the prepareMappings task, in the order of the manifest.
+ *
+ * The manifest maps versions to their mapping sources (mapping type name -> entry path relative to the manifest, null if not available).
+ *
+ * @param manifest the manifest
+ * @return the mappings
+ */
+fun loadTypedMappings(manifest: File): List<TypedMappingFile> {
+    val versions: Map<String, Map<String, String?>> = MAPPER.readValue(manifest)
+    val executor: ExecutorService = Executors.newFixedThreadPool(
+        Runtime.getRuntime().availableProcessors().coerceAtMost(versions.size).coerceAtLeast(1)
+    )
+    try {
+        return versions.values
+            .map { sources ->
+                CompletableFuture.supplyAsync({
+                    SrgUtilsMappingLoader.of(
+                        // order matters, kept by the manifest
+                        *sources.map { (type, path) ->
+                            Pair.of(MappingType.BY_NAME.getValue(type), path?.let { readMappingCache(File(manifest.parentFile, it)) })
+                        }.toTypedArray<Pair<Identifier, *>>()
+                    ).loadTyped()
+                }, executor)
+            }
+            .map { future ->
+                try {
+                    future.join()
+                } catch (e: CompletionException) {
+                    throw e.cause ?: e
+                }
+            }
+    } finally {
+        executor.shutdownNow()
+    }
+}
+
+private fun hasCacheHeader(file: File): Boolean =
+    DataInputStream(FileInputStream(file)).use { input ->
+        try {
+            input.readInt() == CACHE_MAGIC && input.readInt() == CACHE_REVISION
+        } catch (ignored: EOFException) {
+            false
+        }
+    }
+
+// layout: magic, revision, string table (u4 length + UTF-8 bytes), classes (original, mapped, fields, methods),
+// fields and methods are (original, mapped, descriptor) string table indexes, -1 means null
+private fun writeMappingCache(file: File, mappings: IMappingFile) {
+    val strings: MutableMap<String, Int> = linkedMapOf()
+    fun index(value: String?): Int = if (value == null) -1 else strings.getOrPut(value) { strings.size }
+
+    val body = ByteArrayOutputStream()
+    DataOutputStream(body).use { out ->
+        out.writeInt(mappings.classes.size)
+        for (clazz: IMappingFile.IClass in mappings.classes) {
+            out.writeInt(index(clazz.original))
+            out.writeInt(index(clazz.mapped))
+            out.writeInt(clazz.fields.size)
+            for (field: IMappingFile.IField in clazz.fields) {
+                out.writeInt(index(field.original))
+                out.writeInt(index(field.mapped))
+                out.writeInt(index(field.descriptor))
+            }
+            out.writeInt(clazz.methods.size)
+            for (method: IMappingFile.IMethod in clazz.methods) {
+                out.writeInt(index(method.original))
+                out.writeInt(index(method.mapped))
+                out.writeInt(index(method.descriptor))
+            }
+        }
+    }
+    // written to a temporary file first, a half-written entry must never be picked up
+    val tempFile: File = File.createTempFile(file.name, ".tmp", file.parentFile)
+    try {
+        DataOutputStream(BufferedOutputStream(FileOutputStream(tempFile))).use { out ->
+            out.writeInt(CACHE_MAGIC)
+            out.writeInt(CACHE_REVISION)
+            out.writeInt(strings.size)
+            for (value: String in strings.keys) {
+                val bytes: ByteArray = value.toByteArray(StandardCharsets.UTF_8)
+                out.writeInt(bytes.size)
+                out.write(bytes)
+            }
+            body.writeTo(out)
+        }
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+    } finally {
+        tempFile.delete()
+    }
+}
+
+/**
+ * Reads a binary mapping file entry.
+ *
+ * @param file the entry
+ * @return the mappings
+ */
+fun readMappingCache(file: File): IMappingFile {
+    FileChannel.open(file.toPath(), StandardOpenOption.READ).use { channel ->
+        val buffer: MappedByteBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+        try {
+            if (buffer.int != CACHE_MAGIC || buffer.int != CACHE_REVISION) {
+                throw IOException("Unsupported mapping cache format")
+            }
+            val strings: Array<String> = Array(buffer.int) {
+                val bytes = ByteArray(buffer.int)
+                buffer.get(bytes)
+                String(bytes, StandardCharsets.UTF_8)
+            }
+            fun string(): String? = buffer.int.let { if (it == -1) null else strings[it] }
+
+            val builder: IMappingBuilder = IMappingBuilder.create("left", "right")
+            repeat(buffer.int) {
+                val clazz: IMappingBuilder.IClass = builder.addClass(string(), string())
+                repeat(buffer.int) {
+                    val original: String? = string()
+                    val mapped: String? = string()
+                    val descriptor: String? = string()
+                    clazz.field(original, mapped).also { if (descriptor != null) it.descriptor(descriptor) }
+                }
+                repeat(buffer.int) {
+                    val original: String? = string()
+                    val mapped: String? = string()
+                    clazz.method(string(), original, mapped)
+                }
+            }
+            return builder.build().getMap("left", "right")
+        } catch (e: RuntimeException) {
+            // truncated entry
+            throw IOException("Malformed mapping cache entry", e)
+        }
+    }
+}
@@ -31,4 +31,12 @@ object MappingType {
     val INTERMEDIARY: Identifier = Identifier.of("INTERMEDIARY")
     val SEARGE: Identifier = Identifier.of("SEARGE")
     val SPIGOT: Identifier = Identifier.of("SPIGOT")
+
+    // name -> type, the prepared mappings manifest refers to the types by name
+    val BY_NAME: Map<String, Identifier> = mapOf(
+        "MOJANG" to MOJANG,
+        "INTERMEDIARY" to INTERMEDIARY,
+        "SEARGE" to SEARGE,
+        "SPIGOT" to SPIGOT
+    )
 }
\ No newline at end of file
@@ -29,6 +29,7 @@ import com.fasterxml.jackson.databind.ObjectMapper
 import com.fasterxml.jackson.module.kotlin.jacksonObjectMapper
 import com.squareup.javapoet.AnnotationSpec
 import com.squareup.javapoet.ClassName
+import org.gradle.api.provider.Property
 import java.io.*
 import java.net.HttpURLConnection
 import java.net.URL
@@ -40,10 +41,39 @@ import java.security.MessageDigest
 import java.util.stream.Collectors
 import java.util.zip.ZipFile
 import kotlin.experimental.and
+import kotlin.reflect.KProperty
 
 val MAPPER: ObjectMapper = jacksonObjectMapper()
 val OVERRIDE_ANNOTATION: AnnotationSpec = AnnotationSpec.builder(ClassName.get("java.lang", "Override")).build()
-private val SHA_1 = MessageDigest.getInstance("SHA-1")
+// wire type -> ByteBuf read/write method suffix
+val BYTE_BUF_TYPES: Map<WireType, String> = mapOf(
+    WireType.BOOLEAN to "Boolean",
+    WireType.BYTE to "Byte",
+    WireType.SHORT to "Short",
+    WireType.INT to "Int",
+    WireType.LONG to "Long",
+    WireType.FLOAT to "Float",
+    WireType.DOUBLE to "Double"
+)
+// wire type -> wrapper field types it can be read into and written from
+val WIRE_FIELD_TYPES: Map<WireType, Set<String>> = mapOf(
+    WireType.BOOLEAN to setOf("boolean", "java.lang.Boolean"),
+    WireType.BYTE to setOf("byte", "java.lang.Byte"),
+    WireType.SHORT to setOf("short", "java.lang.Short"),
+    WireType.INT to setOf("int", "java.lang.Integer"),
+    WireType.LONG to setOf("long", "java.lang.Long"),
+    WireType.FLOAT to setOf("float", "java.lang.Float"),
+    WireType.DOUBLE to setOf("double", "java.lang.Double"),
+    WireType.VAR_INT to setOf("int", "java.lang.Integer"),
+    WireType.VAR_LONG to setOf("long", "java.lang.Long"),
+    WireType.STRING to setOf("java.lang.String"),
+    WireType.UUID to setOf("java.util.UUID")
+)
+
+// delegates for plain Kotlin properties backed by a Gradle property
+operator fun <T : Any> Property<T>.getValue(thisRef: Any?, property: KProperty<*>): T = get()
+
+operator fun <T : Any> Property<T>.setValue(thisRef: Any?, property: KProperty<*>, value: T) = set(value)
 
 fun newFile(fileName: String, workFolder: File): File {
     workFolder.mkdirs()
@@ -57,7 +87,7 @@ fun getFromURL(urlS: String, fileName: String, workFolder: File, sha1: String?,
         if (!verifyChecksums) {
             return downloadedFile
         } else if (sha1 != null) {
-            if (getFileChecksum(SHA_1, downloadedFile) == sha1) {
+            if (getFileChecksum(MessageDigest.getInstance("SHA-1"), downloadedFile) == sha1) {
                 return downloadedFile
             }
         } else {
@@ -105,13 +135,15 @@ fun minecraftResource(ver: String, res: String, workFolder: File, verifyChecksum
     return null
 }
 
-fun seargeMapping(ver: String, workFolder: File, verifyChecksums: Boolean): InputStream? {
+fun seargeMapping(ver: String, workFolder: File, verifyChecksums: Boolean): File? {
     return seargeMapping0("https://maven.minecraftforge.net/de/oceanlabs/mcp/mcp_config/$ver/mcp_config-$ver.zip", ver, workFolder, verifyChecksums)
         ?: seargeMapping0("https://maven.minecraftforge.net/de/oceanlabs/mcp/mcp/$ver/mcp-$ver-srg.zip", ver, workFolder, verifyChecksums)
 }
 
-private fun seargeMapping0(url: String, ver: String, workFolder: File, verifyChecksums: Boolean): InputStream? {
-    val file: File = getFromURL(url, "mcp_$ver.zip", workFolder, getStringFromURL("$url.sha1"), verifyChecksums) ?: return null
+private fun seargeMapping0(url: String, ver: String, workFolder: File, verifyChecksums: Boolean): File? =
+    getFromURL(url, "mcp_$ver.zip", workFolder, getStringFromURL("$url.sha1"), verifyChecksums)
+
+fun openSeargeMapping(file: File): InputStream {
     val zipFile = ZipFile(file)
     return zipFile.getInputStream(
         zipFile.stream()
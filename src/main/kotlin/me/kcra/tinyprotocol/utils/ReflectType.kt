@@ -25,5 +25,5 @@
 package me.kcra.tinyprotocol.utils
 
 enum class ReflectType {
-    ZERODEP, NARCISSUS, OBJENESIS
+    ZERODEP, NARCISSUS, OBJENESIS, METHOD_HANDLES, COMPILED
 }
\ No newline at end of file
@@ -0,0 +1,159 @@
+/*
+ * This file is part of tinyprotocol2, licensed under the MIT License.
+ *
+ * Copyright (c) 2022 Matouš Kučera
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package {utilsPackage};
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * The NMS members of a packet wrapper, resolved for a single protocol version.
+ */
+public final class Binding {
+    private final int version;
+    private final Class<?> nmsClass;
+    private final Class<?> friendlyByteBufClass;
+    private final Method readMethod;
+    private final Method writeMethod;
+    private final Field[] fields;
+    private final MethodHandle[] getters;
+    private final MethodHandle[] setters;
+    private final MethodHandle toNMSCopier;
+    private final MethodHandle fromNMSCopier;
+
+    public Binding(int version, Class<?> nmsClass, Class<?> friendlyByteBufClass, Method readMethod, Method writeMethod, Field[] fields) {
+        this(version, nmsClass, friendlyByteBufClass, readMethod, writeMethod, fields, null, null, null, null);
+    }
+
+    public Binding(int version, Class<?> nmsClass, Class<?> friendlyByteBufClass, Method readMethod, Method writeMethod, Field[] fields, MethodHandle[] getters, MethodHandle[] setters) {
+        this(version, nmsClass, friendlyByteBufClass, readMethod, writeMethod, fields, getters, setters, null, null);
+    }
+
+    public Binding(int version, Class<?> nmsClass, Class<?> friendlyByteBufClass, Method readMethod, Method writeMethod, Field[] fields, MethodHandle[] getters, MethodHandle[] setters, MethodHandle toNMSCopier, MethodHandle fromNMSCopier) {
+        this.version = version;
+        this.nmsClass = nmsClass;
+        this.friendlyByteBufClass = friendlyByteBufClass;
+        this.readMethod = readMethod;
+        this.writeMethod = writeMethod;
+        this.fields = fields;
+        this.getters = getters;
+        this.setters = setters;
+        this.toNMSCopier = toNMSCopier;
+        this.fromNMSCopier = fromNMSCopier;
+    }
+
+    /**
+     * Returns the protocol version this binding was resolved for.
+     *
+     * @return the protocol version
+     */
+    public int version() {
+        return version;
+    }
+
+    /**
+     * Returns the NMS packet class.
+     *
+     * @return the NMS packet class, null if the packet does not exist in this version
+     */
+    public Class<?> nmsClass() {
+        return nmsClass;
+    }
+
+    /**
+     * Returns the <a href="https://nms.screamingsandals.org/1.18.1/net/minecraft/network/FriendlyByteBuf.html">net.minecraft.network.FriendlyByteBuf</a> class.
+     *
+     * @return the FriendlyByteBuf class
+     */
+    public Class<?> friendlyByteBufClass() {
+        return friendlyByteBufClass;
+    }
+
+    /**
+     * Returns the NMS packet read method.
+     *
+     * @return the read method, null if the packet is read through its constructor
+     */
+    public Method readMethod() {
+        return readMethod;
+    }
+
+    /**
+     * Returns the NMS packet write method.
+     *
+     * @return the write method
+     */
+    public Method writeMethod() {
+        return writeMethod;
+    }
+
+    /**
+     * Returns the NMS field bound to the packet wrapper field at the supplied index, in declaration order.
+     *
+     * @param index the packet wrapper field index
+     * @return the NMS field, null if the field does not exist in this version
+     */
+    public Field field(int index) {
+        return fields[index];
+    }
+
+    /**
+     * Returns the getter handle of the NMS field bound to the packet wrapper field at the supplied index, in declaration order.
+     *
+     * @param index the packet wrapper field index
+     * @return the getter handle, null if the field does not exist in this version or the wrappers were not generated with a MethodHandle Reflect implementation
+     */
+    public MethodHandle getter(int index) {
+        return getters != null ? getters[index] : null;
+    }
+
+    /**
+     * Returns the setter handle of the NMS field bound to the packet wrapper field at the supplied index, in declaration order.
+     *
+     * @param index the packet wrapper field index
+     * @return the setter handle, null if the field does not exist in this version or the wrappers were not generated with a MethodHandle Reflect implementation
+     */
+    public MethodHandle setter(int index) {
+        return setters != null ? setters[index] : null;
+    }
+
+    /**
+     * Returns the compiled handle copying all packet wrapper fields into a NMS packet.
+     *
+     * @return the copier handle, null if the wrappers were not generated with the COMPILED Reflect implementation
+     */
+    public MethodHandle toNMSCopier() {
+        return toNMSCopier;
+    }
+
+    /**
+     * Returns the compiled handle copying all NMS packet fields into a packet wrapper.
+     *
+     * @return the copier handle, null if the wrappers were not generated with the COMPILED Reflect implementation
+     */
+    public MethodHandle fromNMSCopier() {
+        return fromNMSCopier;
+    }
+}
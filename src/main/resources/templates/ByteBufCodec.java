@@ -0,0 +1,117 @@
+/*
+ * This file is part of tinyprotocol2, licensed under the MIT License.
+ *
+ * Copyright (c) 2022 Matouš Kučera
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package {utilsPackage};
+
+import {nettyPackage}.buffer.ByteBuf;
+import {nettyPackage}.buffer.ByteBufUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Encoding and decoding of the Minecraft protocol data types directly against a Netty buffer.
+ */
+public final class ByteBufCodec {
+    private ByteBufCodec() {
+    }
+
+    public static int readVarInt(ByteBuf buf) {
+        int value = 0;
+        for (int i = 0; i < 5; i++) {
+            final byte current = buf.readByte();
+            value |= (current & 0x7F) << (i * 7);
+            if ((current & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("VarInt too big");
+    }
+
+    public static void writeVarInt(ByteBuf buf, int value) {
+        while ((value & ~0x7F) != 0) {
+            buf.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf.writeByte(value);
+    }
+
+    public static long readVarLong(ByteBuf buf) {
+        long value = 0;
+        for (int i = 0; i < 10; i++) {
+            final byte current = buf.readByte();
+            value |= (long) (current & 0x7F) << (i * 7);
+            if ((current & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("VarLong too big");
+    }
+
+    public static void writeVarLong(ByteBuf buf, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buf.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf.writeByte((int) value);
+    }
+
+    public static String readString(ByteBuf buf, int maxLength) {
+        final int length = readVarInt(buf);
+        if (length > maxLength * 3) {
+            throw new IllegalArgumentException("The received encoded string buffer length is longer than maximum allowed (" + length + " > " + (maxLength * 3) + ")");
+        }
+        if (length < 0) {
+            throw new IllegalArgumentException("The received encoded string buffer length is less than zero! Weird string!");
+        }
+        final String value = buf.toString(buf.readerIndex(), length, StandardCharsets.UTF_8);
+        buf.skipBytes(length);
+        if (value.length() > maxLength) {
+            throw new IllegalArgumentException("The received string length is longer than maximum allowed (" + value.length() + " > " + maxLength + ")");
+        }
+        return value;
+    }
+
+    public static void writeString(ByteBuf buf, String value, int maxLength) {
+        if (value.length() > maxLength) {
+            throw new IllegalArgumentException("String too big (was " + value.length() + " characters, max " + maxLength + ")");
+        }
+        // measured up front to encode straight into the buffer without an intermediate byte array
+        final int length = ByteBufUtil.utf8Bytes(value);
+        if (length > maxLength * 3) {
+            throw new IllegalArgumentException("String too big (was " + length + " bytes encoded, max " + (maxLength * 3) + ")");
+        }
+        writeVarInt(buf, length);
+        buf.writeCharSequence(value, StandardCharsets.UTF_8);
+    }
+
+    public static UUID readUUID(ByteBuf buf) {
+        return new UUID(buf.readLong(), buf.readLong());
+    }
+
+    public static void writeUUID(ByteBuf buf, UUID value) {
+        buf.writeLong(value.getMostSignificantBits());
+        buf.writeLong(value.getLeastSignificantBits());
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * This file is part of tinyprotocol2, licensed under the MIT License.
+ *
+ * Copyright (c) 2022 Matouš Kučera
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package {utilsPackage};
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.function.Function;
+
+/**
+ * Constructor resolution shared by all Reflect implementations.
+ */
+final class Constructors {
+    private static final MethodType NO_ARGS_TYPE = MethodType.methodType(Object.class);
+    private static final MethodType SPREAD_TYPE = MethodType.methodType(Object.class, Object[].class);
+    // [class, resolved constructors by argument classes]
+    private static final ClassValue<ConstructorCache> CONSTRUCTORS = new ClassValue<ConstructorCache>() {
+        @Override
+        protected ConstructorCache computeValue(Class<?> type) {
+            return new ConstructorCache(type);
+        }
+    };
+
+    private Constructors() {
+    }
+
+    /**
+     * Creates a memoized no-args instantiation strategy per class, the public no-args constructor is preferred.
+     *
+     * @param fallback the strategy of classes without a public no-args constructor, may return null if there is none
+     * @return the strategies
+     */
+    static ClassValue<Instantiator> instantiators(Function<Class<?>, Instantiator> fallback) {
+        return new ClassValue<Instantiator>() {
+            @Override
+            protected Instantiator computeValue(Class<?> type) {
+                try {
+                    final Constructor<?> c = type.getConstructor();
+                    c.setAccessible(true);
+                    final MethodHandle constructor = MethodHandles.lookup().unreflectConstructor(c).asType(NO_ARGS_TYPE);
+                    return () -> (Object) constructor.invokeExact();
+                } catch (Throwable ignored) {
+                }
+                final Instantiator instantiator = fallback.apply(type);
+                if (instantiator != null) {
+                    return instantiator;
+                }
+                final InstantiationException exception = new InstantiationException("No instantiation strategy for " + type.getName());
+                return () -> {
+                    throw exception;
+                };
+            }
+        };
+    }
+
+    /**
+     * Returns the most specific constructor applicable to the supplied arguments, as a handle taking the arguments in an array.
+     * <p>
+     * The handle throws a {@link NoSuchMethodException}, if no constructor is applicable or if there is no single most specific one.
+     *
+     * @param clazz the class
+     * @param args the constructor arguments
+     * @return the constructor handle
+     */
+    static MethodHandle find(Class<?> clazz, Object[] args) {
+        return CONSTRUCTORS.get(clazz).find(args);
+    }
+
+    // only the constructors of the class itself, a superclass constructor would create an instance of the wrong class
+    private static MethodHandle resolve(Class<?> clazz, Class<?>[] argClasses) {
+        final List<Constructor<?>> applicable = new ArrayList<>();
+        for (Constructor<?> candidate : clazz.getDeclaredConstructors()) {
+            if (isApplicable(candidate.getParameterTypes(), argClasses)) {
+                applicable.add(candidate);
+            }
+        }
+        if (applicable.isEmpty()) {
+            return failure(new NoSuchMethodException("No constructor of " + clazz.getName() + " for " + describe(argClasses)));
+        }
+        final Constructor<?> constructor = mostSpecific(applicable);
+        if (constructor == null) {
+            return failure(new NoSuchMethodException("Ambiguous constructors of " + clazz.getName() + " for " + describe(argClasses) + ": " + applicable));
+        }
+        try {
+            constructor.setAccessible(true);
+            return MethodHandles.lookup().unreflectConstructor(constructor)
+                    .asSpreader(Object[].class, argClasses.length)
+                    .asType(SPREAD_TYPE);
+        } catch (Throwable e) {
+            final NoSuchMethodException exception = new NoSuchMethodException("Inaccessible constructor " + constructor);
+            exception.initCause(e);
+            return failure(exception);
+        }
+    }
+
+    // the argument classes as a parameter list, e.g. (java.lang.String, int, null)
+    private static String describe(Class<?>[] argClasses) {
+        final StringJoiner joiner = new StringJoiner(", ", "(", ")");
+        for (Class<?> argClass : argClasses) {
+            joiner.add(argClass != null ? argClass.getName() : "null");
+        }
+        return joiner.toString();
+    }
+
+    // the constructor whose parameters are applicable to all other candidates, null if there is none
+    private static Constructor<?> mostSpecific(List<Constructor<?>> candidates) {
+        Constructor<?> result = null;
+        for (Constructor<?> candidate : candidates) {
+            boolean specific = true;
+            for (Constructor<?> other : candidates) {
+                if (other != candidate && !isMoreSpecific(candidate.getParameterTypes(), other.getParameterTypes())) {
+                    specific = false;
+                    break;
+                }
+            }
+            if (specific) {
+                if (result != null) {
+                    return null;
+                }
+                result = candidate;
+            }
+        }
+        return result;
+    }
+
+    private static boolean isMoreSpecific(Class<?>[] paramTypes, Class<?>[] otherParamTypes) {
+        for (int i = 0; i < paramTypes.length; i++) {
+            if (!wrap(otherParamTypes[i]).isAssignableFrom(wrap(paramTypes[i]))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isApplicable(Class<?>[] paramTypes, Class<?>[] argClasses) {
+        if (paramTypes.length != argClasses.length) {
+            return false;
+        }
+        for (int i = 0; i < paramTypes.length; i++) {
+            if (argClasses[i] == null) {
+                if (paramTypes[i].isPrimitive()) {
+                    return false;
+                }
+            } else if (!wrap(paramTypes[i]).isAssignableFrom(argClasses[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Class<?> wrap(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return type;
+        } else if (type == int.class) {
+            return Integer.class;
+        } else if (type == long.class) {
+            return Long.class;
+        } else if (type == boolean.class) {
+            return Boolean.class;
+        } else if (type == double.class) {
+            return Double.class;
+        } else if (type == float.class) {
+            return Float.class;
+        } else if (type == short.class) {
+            return Short.class;
+        } else if (type == byte.class) {
+            return Byte.class;
+        } else if (type == char.class) {
+            return Character.class;
+        }
+        return Void.class;
+    }
+
+    // a handle with the constructor handle type, which throws the supplied exception
+    private static MethodHandle failure(NoSuchMethodException exception) {
+        return MethodHandles.dropArguments(
+                MethodHandles.insertArguments(MethodHandles.throwException(Object.class, NoSuchMethodException.class), 0, exception),
+                0, Object[].class
+        );
+    }
+
+    /**
+     * A no-args instantiation strategy.
+     */
+    @FunctionalInterface
+    interface Instantiator {
+        Object newInstance() throws Throwable;
+    }
+
+    private static final class ConstructorCache {
+        private final Class<?> type;
+        private volatile Entry[] entries = new Entry[0];
+
+        private ConstructorCache(Class<?> type) {
+            this.type = type;
+        }
+
+        private MethodHandle find(Object[] args) {
+            for (Entry entry : entries) {
+                if (entry.matches(args)) {
+                    return entry.constructor;
+                }
+            }
+            return resolve(args);
+        }
+
+        private synchronized MethodHandle resolve(Object[] args) {
+            final Entry[] entries0 = entries;
+            for (Entry entry : entries0) {
+                if (entry.matches(args)) {
+                    return entry.constructor;
+                }
+            }
+            final Class<?>[] argClasses = new Class<?>[args.length];
+            for (int i = 0; i < args.length; i++) {
+                argClasses[i] = args[i] == null ? null : args[i].getClass();
+            }
+            // failed resolutions are cached too, so they aren't looked up again
+            final Entry entry = new Entry(argClasses, Constructors.resolve(type, argClasses));
+            final Entry[] newEntries = Arrays.copyOf(entries0, entries0.length + 1);
+            newEntries[entries0.length] = entry;
+            entries = newEntries;
+            return entry.constructor;
+        }
+    }
+
+    private static final class Entry {
+        private final Class<?>[] argClasses;
+        private final MethodHandle constructor;
+
+        private Entry(Class<?>[] argClasses, MethodHandle constructor) {
+            this.argClasses = argClasses;
+            this.constructor = constructor;
+        }
+
+        private boolean matches(Object[] args) {
+            if (args.length != argClasses.length) {
+                return false;
+            }
+            for (int i = 0; i < args.length; i++) {
+                if ((args[i] == null ? null : args[i].getClass()) != argClasses[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * This file is part of tinyprotocol2, licensed under the MIT License.
+ *
+ * Copyright (c) 2022 Matouš Kučera
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package {utilsPackage};
+
+/**
+ * A packet wrapper conversion implementation specialized for a group of protocol versions.
+ *
+ * @param <T> the packet wrapper type
+ */
+public interface Converter<T extends Packet> {
+    /**
+     * Returns the protocol version this converter was created for.
+     *
+     * @return the protocol version
+     */
+    int version();
+
+    /**
+     * Creates a new NMS packet and immediately populates it with values from the supplied packet wrapper instance.
+     *
+     * @param packet the packet wrapper
+     * @return the raw (net.minecraft) packet
+     */
+    Object toNMS(T packet);
+
+    /**
+     * Populates the supplied packet wrapper instance with values from the supplied NMS packet.
+     *
+     * @param raw the raw (net.minecraft) packet
+     * @param packet the packet wrapper
+     */
+    void fromNMS(Object raw, T packet);
+}
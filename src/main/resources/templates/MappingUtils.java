@@ -26,50 +26,113 @@ package {utilsPackage};
 
 import java.lang.reflect.Field;
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class MappingUtils {
-    // [packet name, [mapping string, [obfuscated mapping, protocolVersions]]]
-    private static final Map<String, Map<String, Map<String, List<Integer>>>> CACHE = Collections.synchronizedMap(new HashMap<>());
-    private static final ReadWriteLock LOCK = new ReentrantReadWriteLock();
+    // [mapping string, unwrapped mapping]
+    private static final Map<String, MappingTable> CACHE = new ConcurrentHashMap<>();
 
     private MappingUtils() {
     }
 
-    public static Map<String, List<Integer>> unwrapMappings(String packetName, String mapping) {
-        LOCK.readLock().lock();
-        try {
-            final Map<String, Map<String, List<Integer>>> cacheResult = CACHE.get(packetName);
-            if (cacheResult != null) {
-                final Map<String, List<Integer>> cacheResult1 = cacheResult.get(mapping);
-                if (cacheResult1 != null) {
-                    return cacheResult1;
+    /**
+     * Parses the mappings of the supplied packet wrapper classes and their fields ahead of time,
+     * so that they don't need to be parsed on the first conversion.
+     *
+     * @param classes the packet wrapper classes
+     */
+    public static void preload(Class<?>... classes) {
+        for (final Class<?> clazz : classes) {
+            final {utilsPackage}.Reobfuscate classMapping = clazz.getAnnotation({utilsPackage}.Reobfuscate.class);
+            if (classMapping != null) {
+                unwrapMappings(classMapping.value());
+            }
+            for (final Field field : clazz.getDeclaredFields()) {
+                final {utilsPackage}.Reobfuscate fieldMapping = field.getAnnotation({utilsPackage}.Reobfuscate.class);
+                if (fieldMapping != null) {
+                    unwrapMappings(fieldMapping.value());
                 }
             }
-        } finally {
-            LOCK.readLock().unlock();
         }
-        LOCK.writeLock().lock();
-        try {
-            final Map<String, List<Integer>> mappings = new HashMap<>();
-            final String[] parts = mapping.split("\\+");
-            for (int i = 0; i < parts.length; i++) {
-                final String[] sides = parts[i].split("=");
-                mappings.computeIfAbsent(sides[0].replace('/', '.'), key -> new ArrayList<>())
-                        .addAll(Arrays.stream(sides[1].split(",")).map(Integer::parseInt).collect(Collectors.toList()));
+    }
+
+    /**
+     * Unwraps a mapping string into a map of obfuscated mappings and their protocol versions.
+     *
+     * @param packetName the packet name, unused
+     * @param mapping the mapping string
+     * @return the unwrapped mappings
+     * @deprecated the mappings are cached by the mapping string alone, use {@link #unwrapMappings(String)}
+     */
+    @Deprecated
+    public static Map<String, List<Integer>> unwrapMappings(String packetName, String mapping) {
+        final MappingTable table = unwrapMappings(mapping);
+        final Map<String, List<Integer>> mappings = new LinkedHashMap<>();
+        for (int i = 0; i < table.versions.length; i++) {
+            mappings.computeIfAbsent(table.mappings[i], key -> new ArrayList<>()).add(table.versions[i]);
+        }
+        mappings.replaceAll((key, versions) -> Collections.unmodifiableList(versions));
+        return Collections.unmodifiableMap(mappings);
+    }
+
+    public static MappingTable unwrapMappings(String mapping) {
+        // mapping strings come from annotations and generated literals, so they're interned and equals() hits the identity check
+        final MappingTable cacheResult = CACHE.get(mapping);
+        if (cacheResult != null) {
+            Metrics.mappingCacheHit();
+            return cacheResult;
+        }
+        // parsing twice on a race is cheaper than locking, the first result wins
+        final long start = System.nanoTime();
+        final MappingTable result = parse(mapping);
+        Metrics.mappingCacheMiss(System.nanoTime() - start);
+        final MappingTable previous = CACHE.putIfAbsent(mapping, result);
+        return previous != null ? previous : result;
+    }
+
+    // format: mapping=ver,ver+mapping=ver,ver
+    private static MappingTable parse(String mapping) {
+        int[] versions = new int[8];
+        String[] mappings = new String[8];
+        int size = 0;
+        final int length = mapping.length();
+        int i = 0;
+        while (i < length) {
+            final int separator = mapping.indexOf('=', i);
+            if (separator == -1) {
+                throw new IllegalArgumentException("Malformed mapping string: " + mapping);
             }
-            // finalizing protocol lists
-            final Iterator<Map.Entry<String, List<Integer>>> mappingIterator = mappings.entrySet().iterator();
-            while (mappingIterator.hasNext()) {
-                final Map.Entry<String, List<Integer>> entry = mappingIterator.next();
-                entry.setValue(Collections.unmodifiableList(entry.getValue()));
+            final String obfMapping = mapping.substring(i, separator).replace('/', '.');
+            i = separator + 1;
+            while (true) {
+                final int start = i;
+                int version = 0;
+                char c;
+                while (i < length && (c = mapping.charAt(i)) >= '0' && c <= '9') {
+                    version = version * 10 + (c - '0');
+                    i++;
+                }
+                if (i == start) {
+                    throw new IllegalArgumentException("Malformed mapping string: " + mapping);
+                }
+                if (size == versions.length) {
+                    versions = Arrays.copyOf(versions, size * 2);
+                    mappings = Arrays.copyOf(mappings, size * 2);
+                }
+                versions[size] = version;
+                mappings[size] = obfMapping;
+                size++;
+                if (i >= length || mapping.charAt(i++) == '+') {
+                    break;
+                }
             }
-            return CACHE.computeIfAbsent(packetName, key -> Collections.synchronizedMap(new HashMap<>())).put(mapping, Collections.unmodifiableMap(mappings));
-        } finally {
-            LOCK.writeLock().unlock();
         }
+        return new MappingTable(Arrays.copyOf(versions, size), Arrays.copyOf(mappings, size));
+    }
+
+    public static String findMapping(MappingTable unwrapped, int ver) {
+        final int index = Arrays.binarySearch(unwrapped.versions, ver);
+        return index >= 0 ? unwrapped.mappings[index] : null;
     }
 
     public static String findMapping(Map<String, List<Integer>> unwrapped, int ver) {
@@ -81,14 +144,68 @@ public final class MappingUtils {
     }
 
     public static String findMapping(Class<?> clazz, int ver) {
-        return findMapping(unwrapMappings(clazz.getSimpleName(), clazz.getAnnotation({utilsPackage}.Reobfuscate.class).value()), ver);
+        return findMapping(unwrapMappings(clazz.getAnnotation({utilsPackage}.Reobfuscate.class).value()), ver);
     }
 
+    public static String findMapping(String mapping, int ver) {
+        return findMapping(unwrapMappings(mapping), ver);
+    }
+
+    /**
+     * Finds the obfuscated mapping in a mapping string.
+     *
+     * @param clazz the packet wrapper class, unused
+     * @param mapping the mapping string
+     * @param ver the protocol version
+     * @return the obfuscated mapping, null if the member is not available in the version
+     * @deprecated the mappings are cached by the mapping string alone, use {@link #findMapping(String, int)}
+     */
+    @Deprecated
     public static String findMapping(Class<?> clazz, String mapping, int ver) {
-        return findMapping(unwrapMappings(clazz.getSimpleName(), mapping), ver);
+        return findMapping(mapping, ver);
+    }
+
+    public static String findMapping(Field field, int ver) {
+        return findMapping(unwrapMappings(field.getAnnotation({utilsPackage}.Reobfuscate.class).value()), ver);
     }
 
+    /**
+     * Finds the obfuscated mapping of a packet wrapper field.
+     *
+     * @param packetName the packet name, unused
+     * @param field the packet wrapper field
+     * @param ver the protocol version
+     * @return the obfuscated mapping, null if the field is not available in the version
+     * @deprecated the mappings are cached by the mapping string alone, use {@link #findMapping(Field, int)}
+     */
+    @Deprecated
     public static String findMapping(String packetName, Field field, int ver) {
-        return findMapping(unwrapMappings(packetName, field.getAnnotation({utilsPackage}.Reobfuscate.class).value()), ver);
+        return findMapping(field, ver);
+    }
+
+    /**
+     * An unwrapped mapping string, holds the obfuscated mappings in a table sorted by protocol version.
+     */
+    public static final class MappingTable {
+        private final int[] versions;
+        private final String[] mappings;
+
+        private MappingTable(int[] versions, String[] mappings) {
+            // insertion sort, the tables are tiny and mostly sorted already
+            for (int i = 1; i < versions.length; i++) {
+                final int version = versions[i];
+                final String mapping = mappings[i];
+                int j = i - 1;
+                while (j >= 0 && versions[j] > version) {
+                    versions[j + 1] = versions[j];
+                    mappings[j + 1] = mappings[j];
+                    j--;
+                }
+                versions[j + 1] = version;
+                mappings[j + 1] = mapping;
+            }
+            this.versions = versions;
+            this.mappings = mappings;
+        }
     }
 }
@@ -0,0 +1,709 @@
+/*
+ * This file is part of tinyprotocol2, licensed under the MIT License.
+ *
+ * Copyright (c) 2022 Matouš Kučera
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package {utilsPackage};
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class Reflect {
+    public static final Object UNSAFE;
+    private static final MethodHandle INVOKE;
+    private static final MethodHandle NON_NULL;
+    private static final MethodHandle REFLECT_GET;
+    private static final MethodHandle REFLECT_SET;
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object.class, Object[].class);
+    private static final MethodType COPIER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    // [class, [field name, handle]]
+    private static final ClassValue<Map<String, FieldHandle>> FIELD_HANDLES = new ClassValue<Map<String, FieldHandle>>() {
+        @Override
+        protected Map<String, FieldHandle> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+    private static final Map<Method, MethodHandle> METHOD_HANDLES = new ConcurrentHashMap<>();
+    // [class, memoized no-args instantiation strategy]
+    private static final ClassValue<Constructors.Instantiator> INSTANTIATORS = Constructors.instantiators(Reflect::allocator);
+
+    static {
+        Object unsafe0 = null;
+        try {
+            final Field theUnsafeField = sun.misc.Unsafe.class.getDeclaredField("theUnsafe");
+            theUnsafeField.setAccessible(true);
+            unsafe0 = theUnsafeField.get(null);
+        } catch (Throwable ignored) {
+        }
+        UNSAFE = unsafe0;
+
+        try {
+            INVOKE = LOOKUP.findVirtual(Method.class, "invoke", INVOKER_TYPE);
+            NON_NULL = LOOKUP.findStatic(Objects.class, "nonNull", MethodType.methodType(boolean.class, Object.class));
+            REFLECT_GET = LOOKUP.findVirtual(Field.class, "get", GETTER_TYPE);
+            REFLECT_SET = LOOKUP.findVirtual(Field.class, "set", SETTER_TYPE);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private Reflect() {
+    }
+
+    public static Class<?> getClassSafe(String name) {
+        if (name == null) {
+            return null;
+        }
+        try {
+            return Class.forName(name);
+        } catch (Throwable e) {
+            failure(name, e);
+        }
+        return null;
+    }
+
+    public static Object construct(Class<?> clazz) {
+        try {
+            return INSTANTIATORS.get(clazz).newInstance();
+        } catch (Throwable e) {
+            failure(clazz, e);
+        }
+        return null;
+    }
+
+    public static Object construct(Class<?> clazz, Object... args) {
+        try {
+            return (Object) Constructors.find(clazz, args).invokeExact(args);
+        } catch (Throwable e) {
+            failure(clazz, e);
+        }
+        return null;
+    }
+
+    public static Method getMethodSafe(Class<?> clazz, String name, Class<?>... args) {
+        Method method = null;
+        try {
+            method = clazz.getMethod(name, args);
+        } catch (Throwable ignored1) {
+            Class<?> clazz1 = clazz;
+            do {
+                try {
+                    method = clazz1.getDeclaredMethod(name, args);
+                } catch (Throwable ignored2) {
+                }
+            } while ((clazz1 = clazz1.getSuperclass()) != null && clazz1 != Object.class && method == null);
+        }
+        if (method == null && name != null) {
+            failure(clazz.getName() + "#" + name, null);
+        }
+        return method;
+    }
+
+    public static MethodHandle getMethodHandle(Method method) {
+        return METHOD_HANDLES.computeIfAbsent(method, key -> {
+            try {
+                MethodHandle handle = MethodHandles.privateLookupIn(key.getDeclaringClass(), LOOKUP).unreflect(key);
+                if (Modifier.isStatic(key.getModifiers())) {
+                    handle = MethodHandles.dropArguments(handle, 0, Object.class);
+                }
+                return handle.asSpreader(Object[].class, key.getParameterCount()).asType(INVOKER_TYPE);
+            } catch (Throwable ignored) {
+            }
+            // fall back to core reflection, still through a handle with the same type
+            key.setAccessible(true);
+            return MethodHandles.insertArguments(INVOKE, 0, key);
+        });
+    }
+
+    public static Object fastInvoke(Method method, Object instance, Object... args) {
+        try {
+            return (Object) getMethodHandle(method).invokeExact(instance, args);
+        } catch (Throwable e) {
+            failure(method, e);
+        }
+        return null;
+    }
+
+    public static Field getFieldSafe(Class<?> clazz, String name) {
+        Field field = null;
+        try {
+            field = clazz.getField(name);
+        } catch (Throwable ignored1) {
+            Class<?> clazz1 = clazz;
+            do {
+                try {
+                    field = clazz1.getDeclaredField(name);
+                } catch (Throwable ignored2) {
+                }
+            } while ((clazz1 = clazz1.getSuperclass()) != null && clazz1 != Object.class && field == null);
+        }
+        if (field == null && name != null) {
+            failure(clazz.getName() + "#" + name, null);
+        }
+        return field;
+    }
+
+    public static FieldHandle getFieldHandle(Field field) {
+        return FIELD_HANDLES.get(field.getDeclaringClass()).computeIfAbsent(field.getName(), key -> new FieldHandle(field));
+    }
+
+    /**
+     * Resolves a getter of the supplied field, meant to be resolved once and kept, e.g. in a {@link Binding}.
+     *
+     * @param field the field
+     * @return the getter, typed {@code (Object)T} for primitive fields and {@code (Object)Object} otherwise, null if the field is null
+     */
+    public static MethodHandle getter(Field field) {
+        if (field == null) {
+            return null;
+        }
+        final FieldHandle handle = getFieldHandle(field);
+        return field.getType().isPrimitive() ? handle.typedGetter : handle.getter;
+    }
+
+    /**
+     * Resolves a setter of the supplied field, meant to be resolved once and kept, e.g. in a {@link Binding}.
+     *
+     * @param field the field
+     * @return the setter, typed {@code (Object, T)void} for primitive fields and {@code (Object, Object)void} otherwise, null if the field is null
+     */
+    public static MethodHandle setter(Field field) {
+        if (field == null) {
+            return null;
+        }
+        final FieldHandle handle = getFieldHandle(field);
+        return field.getType().isPrimitive() ? handle.typedSetter : handle.setter;
+    }
+
+    public static Object getField(Object instance, String name) {
+        final Map<String, FieldHandle> handles = FIELD_HANDLES.get(instance.getClass());
+        FieldHandle handle = handles.get(name);
+        if (handle == null) {
+            final Field field = getFieldSafe(instance.getClass(), name);
+            if (field == null) {
+                return null;
+            }
+            handle = getFieldHandle(field);
+            handles.putIfAbsent(name, handle);
+        }
+        return handle.get(instance);
+    }
+
+    public static Object getField(Field field, Object instance) {
+        if (field == null) {
+            return null;
+        }
+        return getFieldHandle(field).get(instance);
+    }
+
+    public static void setField(Field field, Object instance, Object value) {
+        if (field != null) {
+            getFieldHandle(field).set(instance, value);
+        }
+    }
+
+    public static Object getField(MethodHandle getter, Object instance) {
+        if (getter != null) {
+            try {
+                return (Object) getter.invokeExact(instance);
+            } catch (Throwable e) {
+                failure(getter, e);
+            }
+        }
+        return null;
+    }
+
+    public static void setField(MethodHandle setter, Object instance, Object value) {
+        if (setter != null) {
+            try {
+                setter.invokeExact(instance, value);
+            } catch (Throwable e) {
+                failure(setter, e);
+            }
+        }
+    }
+
+    public static boolean getBoolean(Field field, Object instance) {
+        return field != null && getBoolean(getFieldHandle(field).typedGetter(), instance);
+    }
+
+    public static boolean getBoolean(MethodHandle getter, Object instance) {
+        if (getter != null) {
+            try {
+                return (boolean) getter.invokeExact(instance);
+            } catch (Throwable e) {
+                failure(getter, e);
+            }
+        }
+        return false;
+    }
+
+    public static void setBoolean(Field field, Object instance, boolean value) {
+        if (field != null) {
+            setBoolean(getFieldHandle(field).typedSetter(), instance, value);
+        }
+    }
+
+    public static void setBoolean(MethodHandle setter, Object instance, boolean value) {
+        if (setter != null) {
+            try {
+                setter.invokeExact(instance, value);
+            } catch (Throwable e) {
+                failure(setter, e);
+            }
+        }
+    }
+
+    public static byte getByte(Field field, Object instance) {
+        return field != null ? getByte(getFieldHandle(field).typedGetter(), instance) : 0;
+    }
+
+    public static byte getByte(MethodHandle getter, Object instance) {
+        if (getter != null) {
+            try {
+                return (byte) getter.invokeExact(instance);
+            } catch (Throwable e) {
+                failure(getter, e);
+            }
+        }
+        return 0;
+    }
+
+    public static void setByte(Field field, Object instance, byte value) {
+        if (field != null) {
+            setByte(getFieldHandle(field).typedSetter(), instance, value);
+        }
+    }
+
+    public static void setByte(MethodHandle setter, Object instance, byte value) {
+        if (setter != null) {
+            try {
+                setter.invokeExact(instance, value);
+            } catch (Throwable e) {
+                failure(setter, e);
+            }
+        }
+    }
+
+    public static short getShort(Field field, Object instance) {
+        return field != null ? getShort(getFieldHandle(field).typedGetter(), instance) : 0;
+    }
+
+    public static short getShort(MethodHandle getter, Object instance) {
+        if (getter != null) {
+            try {
+                return (short) getter.invokeExact(instance);
+            } catch (Throwable e) {
+                failure(getter, e);
+            }
+        }
+        return 0;
+    }
+
+    public static void setShort(Field field, Object instance, short value) {
+        if (field != null) {
+            setShort(getFieldHandle(field).typedSetter(), instance, value);
+        }
+    }
+
+    public static void setShort(MethodHandle setter, Object instance, short value) {
+        if (setter != null) {
+            try {
+                setter.invokeExact(instance, value);
+            } catch (Throwable e) {
+                failure(setter, e);
+            }
+        }
+    }
+
+    public static char getChar(Field field, Object instance) {
+        return field != null ? getChar(getFieldHandle(field).typedGetter(), instance) : 0;
+    }
+
+    public static char getChar(MethodHandle getter, Object instance) {
+        if (getter != null) {
+            try {
+                return (char) getter.invokeExact(instance);
+            } catch (Throwable e) {
+                failure(getter, e);
+            }
+        }
+        return 0;
+    }
+
+    public static void setChar(Field field, Object instance, char value) {
+        if (field != null) {
+            setChar(getFieldHandle(field).typedSetter(), instance, value);
+        }
+    }
+
+    public static void setChar(MethodHandle setter, Object instance, char value) {
+        if (setter != null) {
+            try {
+                setter.invokeExact(instance, value);
+            } catch (Throwable e) {
+                failure(setter, e);
+            }
+        }
+    }
+
+    public static int getInt(Field field, Object instance) {
+        return field != null ? getInt(getFieldHandle(field).typedGetter(), instance) : 0;
+    }
+
+    public static int getInt(MethodHandle getter, Object instance) {
+        if (getter != null) {
+            try {
+                return (int) getter.invokeExact(instance);
+            } catch (Throwable e) {
+                failure(getter, e);
+            }
+        }
+        return 0;
+    }
+
+    public static void setInt(Field field, Object instance, int value) {
+        if (field != null) {
+            setInt(getFieldHandle(field).typedSetter(), instance, value);
+        }
+    }
+
+    public static void setInt(MethodHandle setter, Object instance, int value) {
+        if (setter != null) {
+            try {
+                setter.invokeExact(instance, value);
+            } catch (Throwable e) {
+                failure(setter, e);
+            }
+        }
+    }
+
+    public static long getLong(Field field, Object instance) {
+        return field != null ? getLong(getFieldHandle(field).typedGetter(), instance) : 0;
+    }
+
+    public static long getLong(MethodHandle getter, Object instance) {
+        if (getter != null) {
+            try {
+                return (long) getter.invokeExact(instance);
+            } catch (Throwable e) {
+                failure(getter, e);
+            }
+        }
+        return 0;
+    }
+
+    public static void setLong(Field field, Object instance, long value) {
+        if (field != null) {
+            setLong(getFieldHandle(field).typedSetter(), instance, value);
+        }
+    }
+
+    public static void setLong(MethodHandle setter, Object instance, long value) {
+        if (setter != null) {
+            try {
+                setter.invokeExact(instance, value);
+            } catch (Throwable e) {
+                failure(setter, e);
+            }
+        }
+    }
+
+    public static float getFloat(Field field, Object instance) {
+        return field != null ? getFloat(getFieldHandle(field).typedGetter(), instance) : 0;
+    }
+
+    public static float getFloat(MethodHandle getter, Object instance) {
+        if (getter != null) {
+            try {
+                return (float) getter.invokeExact(instance);
+            } catch (Throwable e) {
+                failure(getter, e);
+            }
+        }
+        return 0;
+    }
+
+    public static void setFloat(Field field, Object instance, float value) {
+        if (field != null) {
+            setFloat(getFieldHandle(field).typedSetter(), instance, value);
+        }
+    }
+
+    public static void setFloat(MethodHandle setter, Object instance, float value) {
+        if (setter != null) {
+            try {
+                setter.invokeExact(instance, value);
+            } catch (Throwable e) {
+                failure(setter, e);
+            }
+        }
+    }
+
+    public static double getDouble(Field field, Object instance) {
+        return field != null ? getDouble(getFieldHandle(field).typedGetter(), instance) : 0;
+    }
+
+    public static double getDouble(MethodHandle getter, Object instance) {
+        if (getter != null) {
+            try {
+                return (double) getter.invokeExact(instance);
+            } catch (Throwable e) {
+                failure(getter, e);
+            }
+        }
+        return 0;
+    }
+
+    public static void setDouble(Field field, Object instance, double value) {
+        if (field != null) {
+            setDouble(getFieldHandle(field).typedSetter(), instance, value);
+        }
+    }
+
+    public static void setDouble(MethodHandle setter, Object instance, double value) {
+        if (setter != null) {
+            try {
+                setter.invokeExact(instance, value);
+            } catch (Throwable e) {
+                failure(setter, e);
+            }
+        }
+    }
+
+    /**
+     * Composes a copier handle, which copies the supplied packet wrapper fields into the bound NMS fields in a single invocation.
+     *
+     * @param lookup a lookup of the packet wrapper class
+     * @param names the packet wrapper field names
+     * @param fields the NMS fields, indexed like the names, null elements are skipped
+     * @return the copier handle, takes the packet wrapper and the NMS packet
+     */
+    public static MethodHandle compileToNMS(MethodHandles.Lookup lookup, String[] names, Field[] fields) {
+        final List<MethodHandle> steps = new ArrayList<>();
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i] != null) {
+                try {
+                    steps.add(copyStep(wrapperGetter(lookup, names[i]), getFieldHandle(fields[i]).typedSetter()));
+                } catch (Throwable e) {
+                    // the field is left out of the copier
+                    failure(fields[i], e);
+                }
+            }
+        }
+        return chain(steps);
+    }
+
+    /**
+     * Composes a copier handle, which copies the bound NMS fields into the supplied packet wrapper fields in a single invocation.
+     *
+     * @param lookup a lookup of the packet wrapper class
+     * @param names the packet wrapper field names
+     * @param fields the NMS fields, indexed like the names, null elements are skipped
+     * @return the copier handle, takes the NMS packet and the packet wrapper
+     */
+    public static MethodHandle compileFromNMS(MethodHandles.Lookup lookup, String[] names, Field[] fields) {
+        final List<MethodHandle> steps = new ArrayList<>();
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i] != null) {
+                try {
+                    steps.add(copyStep(getFieldHandle(fields[i]).typedGetter(), wrapperSetter(lookup, names[i])));
+                } catch (Throwable e) {
+                    // the field is left out of the copier
+                    failure(fields[i], e);
+                }
+            }
+        }
+        return chain(steps);
+    }
+
+    public static void copy(MethodHandle copier, Object from, Object to) {
+        try {
+            copier.invokeExact(from, to);
+        } catch (Throwable e) {
+            failure(copier, e);
+        }
+    }
+
+    private static MethodHandle wrapperGetter(MethodHandles.Lookup lookup, String name) throws ReflectiveOperationException {
+        final Field field = lookup.lookupClass().getDeclaredField(name);
+        return lookup.unreflectGetter(field).asType(MethodType.methodType(field.getType(), Object.class));
+    }
+
+    private static MethodHandle wrapperSetter(MethodHandles.Lookup lookup, String name) throws ReflectiveOperationException {
+        final Field field = lookup.lookupClass().getDeclaredField(name);
+        return lookup.unreflectSetter(field).asType(MethodType.methodType(void.class, Object.class, field.getType()));
+    }
+
+    private static MethodHandle copyStep(MethodHandle getter, MethodHandle setter) {
+        final Class<?> source = getter.type().returnType();
+        final Class<?> target = setter.type().parameterType(1);
+        // (to, from) -> (from, to)
+        MethodHandle step = MethodHandles.filterArguments(setter, 1, getter.asType(getter.type().changeReturnType(target)));
+        step = MethodHandles.permuteArguments(step, COPIER_TYPE, 1, 0);
+        if (!source.isPrimitive() && target.isPrimitive()) {
+            // skip null values instead of failing the whole copy on unboxing
+            final MethodHandle test = MethodHandles.filterReturnValue(getter.asType(GETTER_TYPE), NON_NULL);
+            step = MethodHandles.guardWithTest(MethodHandles.dropArguments(test, 1, Object.class), step, MethodHandles.empty(COPIER_TYPE));
+        }
+        return step;
+    }
+
+    private static MethodHandle chain(List<MethodHandle> steps) {
+        MethodHandle copier = MethodHandles.empty(COPIER_TYPE);
+        for (int i = steps.size() - 1; i >= 0; i--) {
+            copier = MethodHandles.foldArguments(copier, steps.get(i));
+        }
+        return copier;
+    }
+
+    /**
+     * A resolved field, holds a {@link VarHandle} and handles derived from it for reads and writes.
+     */
+    public static final class FieldHandle {
+        private final Field field;
+        private final VarHandle handle;
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+        private final MethodHandle typedGetter;
+        private final MethodHandle typedSetter;
+
+        private FieldHandle(Field field) {
+            this.field = field;
+            VarHandle handle = null;
+            MethodHandle getter;
+            MethodHandle setter;
+            try {
+                final MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(field.getDeclaringClass(), LOOKUP);
+                handle = lookup.unreflectVarHandle(field);
+                getter = handle.toMethodHandle(VarHandle.AccessMode.GET);
+                if (Modifier.isFinal(field.getModifiers())) {
+                    // VarHandles of final fields are read-only, but an accessible non-static final field can still be set
+                    field.setAccessible(true);
+                    setter = lookup.unreflectSetter(field);
+                } else {
+                    setter = handle.toMethodHandle(VarHandle.AccessMode.SET);
+                }
+                if (Modifier.isStatic(field.getModifiers())) {
+                    getter = MethodHandles.dropArguments(getter, 0, Object.class);
+                    setter = MethodHandles.dropArguments(setter, 0, Object.class);
+                }
+            } catch (Throwable ignored) {
+                // not reachable through a lookup, fall back to core reflection, still through handles of the same types
+                try {
+                    field.setAccessible(true);
+                } catch (Throwable ignored1) {
+                }
+                getter = REFLECT_GET.bindTo(field);
+                setter = REFLECT_SET.bindTo(field);
+            }
+            this.handle = handle;
+            this.typedGetter = getter.asType(MethodType.methodType(field.getType(), Object.class));
+            this.typedSetter = setter.asType(MethodType.methodType(void.class, Object.class, field.getType()));
+            this.getter = getter.asType(GETTER_TYPE);
+            this.setter = setter.asType(SETTER_TYPE);
+        }
+
+        public Field field() {
+            return field;
+        }
+
+        /**
+         * Returns the {@link VarHandle} of the field.
+         *
+         * @return the VarHandle, null if the field is not reachable through a lookup
+         */
+        public VarHandle handle() {
+            return handle;
+        }
+
+        /**
+         * Returns a getter typed {@code (Object)T}, where T is the exact field type.
+         *
+         * @return the getter
+         */
+        public MethodHandle typedGetter() {
+            return typedGetter;
+        }
+
+        /**
+         * Returns a setter typed {@code (Object, T)void}, where T is the exact field type.
+         *
+         * @return the setter
+         */
+        public MethodHandle typedSetter() {
+            return typedSetter;
+        }
+
+        public Object get(Object instance) {
+            try {
+                return (Object) getter.invokeExact(instance);
+            } catch (Throwable e) {
+                failure(field, e);
+            }
+            return null;
+        }
+
+        public void set(Object instance, Object value) {
+            try {
+                setter.invokeExact(instance, value);
+            } catch (Throwable e) {
+                failure(field, e);
+            }
+        }
+    }
+
+    // null members are absent in the current version, not failures
+    private static void failure(Object member, Throwable cause) {
+        if (member != null) {
+            Metrics.reflectionFailure(member.toString(), cause);
+        }
+    }
+
+    // classes without a public no-args constructor, null if they can't be instantiated
+    private static Constructors.Instantiator allocator(Class<?> clazz) {
+        try {
+            final Constructor<?> c = sun.reflect.ReflectionFactory.getReflectionFactory().newConstructorForSerialization(clazz, Object.class.getDeclaredConstructor());
+            return c::newInstance;
+        } catch (Throwable ignored) {
+        }
+        if (UNSAFE != null) {
+            final sun.misc.Unsafe unsafe = (sun.misc.Unsafe) UNSAFE;
+            return () -> unsafe.allocateInstance(clazz);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,314 @@
+/*
+ * This file is part of tinyprotocol2, licensed under the MIT License.
+ *
+ * Copyright (c) 2022 Matouš Kučera
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package {utilsPackage};
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Conversion, mapping cache and reflection failure metrics, exposed as platform MXBeans.
+ * <p>
+ * The global metrics are registered as {@code {utilsPackage}:type=Metrics},
+ * the metrics of a packet wrapper as {@code {utilsPackage}:type=PacketMetrics,name=<wrapper class name>}.
+ * The read and write timings include the toNMS and fromNMS calls they make, which are recorded as well.
+ * Reflection failures are counted globally, and on the packet wrapper whose conversion or binding resolution ran into them.
+ */
+public final class Metrics {
+    private static final GlobalMetrics GLOBAL = new GlobalMetrics();
+    // the packet wrapper converted on the current thread, its reflection failures are counted on it as well
+    private static final ThreadLocal<PacketMetrics> CURRENT = new ThreadLocal<>();
+
+    static {
+        register("{utilsPackage}:type=Metrics", GLOBAL);
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Creates and registers the metrics of a packet wrapper.
+     *
+     * @param name the packet wrapper class name
+     * @return the packet metrics
+     */
+    public static PacketMetrics packet(String name) {
+        final PacketMetrics metrics = new PacketMetrics();
+        register("{utilsPackage}:type=PacketMetrics,name=" + ObjectName.quote(name), metrics);
+        return metrics;
+    }
+
+    /**
+     * Attributes the reflection failures on the current thread to the supplied packet wrapper, until {@link #exit(PacketMetrics)} is called.
+     *
+     * @param metrics the packet metrics
+     * @return the previously attributed packet metrics, to be restored with {@link #exit(PacketMetrics)}
+     */
+    public static PacketMetrics enter(PacketMetrics metrics) {
+        final PacketMetrics previous = CURRENT.get();
+        CURRENT.set(metrics);
+        return previous;
+    }
+
+    /**
+     * Restores the attribution of reflection failures on the current thread.
+     *
+     * @param previous the packet metrics returned by {@link #enter(PacketMetrics)}
+     */
+    public static void exit(PacketMetrics previous) {
+        CURRENT.set(previous);
+    }
+
+    public static void mappingCacheHit() {
+        GLOBAL.mappingCacheHits.increment();
+    }
+
+    public static void mappingCacheMiss(long parseNanos) {
+        GLOBAL.mappingCacheMisses.increment();
+        GLOBAL.mappingParseNanos.add(parseNanos);
+    }
+
+    /**
+     * Records a swallowed reflection failure, on the packet wrapper converted on the current thread as well.
+     *
+     * @param member the member that failed, e.g. "field net.minecraft.SomeClass#a"
+     * @param cause the failure cause, null if there's none
+     */
+    public static void reflectionFailure(String member, Throwable cause) {
+        final String failure = cause != null ? member + ": " + cause : member;
+        GLOBAL.reflectionFailures.increment();
+        GLOBAL.lastReflectionFailure = failure;
+        final PacketMetrics packet = CURRENT.get();
+        if (packet != null) {
+            packet.reflectionFailures.increment();
+            packet.lastReflectionFailure = failure;
+        }
+    }
+
+    private static void register(String name, Object mbean) {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName objectName = new ObjectName(name);
+            // the same utils package may be loaded more than once, e.g. after a plugin reload
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(mbean, objectName);
+        } catch (Throwable ignored) {
+            // JMX is unavailable, the metrics are still recorded
+        }
+    }
+
+    public interface MetricsMXBean {
+        long getMappingCacheHits();
+
+        long getMappingCacheMisses();
+
+        long getMappingParseNanos();
+
+        long getReflectionFailures();
+
+        String getLastReflectionFailure();
+    }
+
+    public interface PacketMetricsMXBean {
+        TimerSnapshot getToNMS();
+
+        TimerSnapshot getFromNMS();
+
+        TimerSnapshot getRead();
+
+        TimerSnapshot getWrite();
+
+        long getReflectionFailures();
+
+        String getLastReflectionFailure();
+    }
+
+    /**
+     * The mapping cache and reflection failure metrics.
+     */
+    private static final class GlobalMetrics implements MetricsMXBean {
+        private final LongAdder mappingCacheHits = new LongAdder();
+        private final LongAdder mappingCacheMisses = new LongAdder();
+        private final LongAdder mappingParseNanos = new LongAdder();
+        private final LongAdder reflectionFailures = new LongAdder();
+        private volatile String lastReflectionFailure = null;
+
+        @Override
+        public long getMappingCacheHits() {
+            return mappingCacheHits.sum();
+        }
+
+        @Override
+        public long getMappingCacheMisses() {
+            return mappingCacheMisses.sum();
+        }
+
+        @Override
+        public long getMappingParseNanos() {
+            return mappingParseNanos.sum();
+        }
+
+        @Override
+        public long getReflectionFailures() {
+            return reflectionFailures.sum();
+        }
+
+        @Override
+        public String getLastReflectionFailure() {
+            return lastReflectionFailure;
+        }
+    }
+
+    /**
+     * The conversion metrics of a single packet wrapper.
+     */
+    public static final class PacketMetrics implements PacketMetricsMXBean {
+        private final Timer toNMS = new Timer();
+        private final Timer fromNMS = new Timer();
+        private final Timer read = new Timer();
+        private final Timer write = new Timer();
+        private final LongAdder reflectionFailures = new LongAdder();
+        private volatile String lastReflectionFailure = null;
+
+        private PacketMetrics() {
+        }
+
+        public void recordToNMS(long startNanos) {
+            toNMS.record(System.nanoTime() - startNanos);
+        }
+
+        public void recordFromNMS(long startNanos) {
+            fromNMS.record(System.nanoTime() - startNanos);
+        }
+
+        public void recordRead(long startNanos) {
+            read.record(System.nanoTime() - startNanos);
+        }
+
+        public void recordWrite(long startNanos) {
+            write.record(System.nanoTime() - startNanos);
+        }
+
+        @Override
+        public TimerSnapshot getToNMS() {
+            return toNMS.snapshot();
+        }
+
+        @Override
+        public TimerSnapshot getFromNMS() {
+            return fromNMS.snapshot();
+        }
+
+        @Override
+        public TimerSnapshot getRead() {
+            return read.snapshot();
+        }
+
+        @Override
+        public TimerSnapshot getWrite() {
+            return write.snapshot();
+        }
+
+        @Override
+        public long getReflectionFailures() {
+            return reflectionFailures.sum();
+        }
+
+        @Override
+        public String getLastReflectionFailure() {
+            return lastReflectionFailure;
+        }
+    }
+
+    /**
+     * A call counter with a latency histogram of power of two nanosecond buckets.
+     */
+    private static final class Timer {
+        // bucket i counts the durations of [2^(i-1), 2^i) ns, the last one everything above
+        private static final int BUCKETS = 40;
+
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+        private Timer() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        private void record(long nanos) {
+            totalNanos.add(nanos);
+            buckets[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(Math.max(0, nanos)))].increment();
+        }
+
+        private TimerSnapshot snapshot() {
+            final long[] histogram = new long[BUCKETS];
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                count += (histogram[i] = buckets[i].sum());
+            }
+            return new TimerSnapshot(count, totalNanos.sum(), histogram);
+        }
+    }
+
+    /**
+     * A point-in-time copy of a timer.
+     */
+    public static final class TimerSnapshot {
+        private final long count;
+        private final long totalNanos;
+        private final long[] histogram;
+
+        private TimerSnapshot(long count, long totalNanos, long[] histogram) {
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.histogram = histogram;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getMeanNanos() {
+            return count != 0 ? totalNanos / count : 0;
+        }
+
+        /**
+         * Returns the call counts by duration, index i counts the calls that took [2^(i-1), 2^i) ns.
+         *
+         * @return the histogram
+         */
+        public long[] getHistogram() {
+            return histogram;
+        }
+    }
+}
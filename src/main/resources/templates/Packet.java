@@ -44,12 +44,31 @@ public interface Packet {
      */
     Object toNMS(int ver);
 
+    /**
+     * Writes the fields modified since the last synchronization with an NMS packet into the supplied existing NMS packet.
+     * <p>
+     * Fields count as modified after a setter or the all-args constructor call,
+     * {@link #fromNMS(Object, int)}, {@link #read(Object, int)} and {@link #reset()} clear them.
+     * This method clears the fields it writes, the ones not available in the version stay modified.
+     * <p>
+     * The generated wrappers implement this method, other implementations of this interface don't have to.
+     *
+     * @param raw the raw (net.minecraft) packet
+     * @param ver the current <strong>server</strong> protocol version
+     * @throws IllegalArgumentException if the packet is not available in the version or raw is not an instance of its NMS packet class
+     * @throws UnsupportedOperationException if the implementation doesn't track modified fields
+     */
+    default void applyTo(Object raw, int ver) {
+        throw new UnsupportedOperationException(getClass().getName() + " doesn't support applyTo");
+    }
+
     /**
      * Populates this packet wrapper instance with the contents of the supplied
      * <a href="https://nms.screamingsandals.org/1.18.1/net/minecraft/network/FriendlyByteBuf.html">net.minecraft.network.FriendlyByteBuf</a> instance.
      * <p>
      * <strong>Note:</strong><br>
      * This method creates a new NMS packet as an intermediate conversion stage, if you already have the NMS packet, consider using the {@link #fromNMS(Object, int)} method.
+     * Wrappers with a direct codec for the version decode the buffer without the intermediate stage.
      *
      * @param buf the FriendlyByteBuf buffer
      * @param ver the current <strong>server</strong> protocol version
@@ -61,10 +80,22 @@ public interface Packet {
      * with values of this packet wrapper instance.
      * <p>
      * <strong>Note:</strong><br>
-     * This method creates a new NMS packet as an intermediate conversion stage.
+     * This method creates a new NMS packet as an intermediate conversion stage,
+     * unless the wrapper has a direct codec for the version, which encodes the buffer without it.
      *
      * @param buf the FriendlyByteBuf buffer
      * @param ver the current <strong>server</strong> protocol version
      */
     void write(Object buf, int ver);
+
+    /**
+     * Resets all fields of this packet wrapper instance to their default values, so it can be reused.
+     * <p>
+     * The generated wrappers implement this method, other implementations of this interface don't have to.
+     *
+     * @throws UnsupportedOperationException if the implementation can't be reused
+     */
+    default void reset() {
+        throw new UnsupportedOperationException(getClass().getName() + " doesn't support reset");
+    }
 }
\ No newline at end of file
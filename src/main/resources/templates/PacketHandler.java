@@ -0,0 +1,158 @@
+/*
+ * This file is part of tinyprotocol2, licensed under the MIT License.
+ *
+ * Copyright (c) 2022 Matouš Kučera
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package {utilsPackage};
+
+import {nettyPackage}.channel.ChannelDuplexHandler;
+import {nettyPackage}.channel.ChannelHandler;
+import {nettyPackage}.channel.ChannelHandlerContext;
+import {nettyPackage}.channel.ChannelPromise;
+import {nettyPackage}.util.ReferenceCountUtil;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A Netty handler passing the packets with a packet wrapper to typed listeners.
+ * <p>
+ * Packets without a wrapper or without listeners are passed through without being wrapped.
+ * The handler holds no channel state, so a single instance can be added to all player channels.
+ */
+@ChannelHandler.Sharable
+public class PacketHandler extends ChannelDuplexHandler {
+    private static final Listener<?>[] NO_LISTENERS = new Listener<?>[0];
+
+    private final PacketRegistry registry;
+    // copy-on-write, read without locking on the event loops
+    private volatile Map<Class<? extends Packet>, Listener<?>[]> listeners = new HashMap<>();
+
+    public PacketHandler(int ver) {
+        this.registry = PacketRegistry.forVersion(ver);
+    }
+
+    /**
+     * Registers a listener for the supplied packet wrapper type.
+     *
+     * @param type the packet wrapper type
+     * @param listener the listener
+     * @param <T> the packet wrapper type
+     * @return this handler
+     */
+    public synchronized <T extends Packet> PacketHandler listen(Class<T> type, Listener<? super T> listener) {
+        final Map<Class<? extends Packet>, Listener<?>[]> copy = new HashMap<>(listeners);
+        final Listener<?>[] current = copy.getOrDefault(type, NO_LISTENERS);
+        final Listener<?>[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = listener;
+        copy.put(type, updated);
+        listeners = copy;
+        return this;
+    }
+
+    /**
+     * Unregisters a listener of the supplied packet wrapper type.
+     *
+     * @param type the packet wrapper type
+     * @param listener the listener
+     * @return this handler
+     */
+    public synchronized PacketHandler unlisten(Class<? extends Packet> type, Listener<?> listener) {
+        final Listener<?>[] current = listeners.get(type);
+        if (current != null) {
+            final Map<Class<? extends Packet>, Listener<?>[]> copy = new HashMap<>(listeners);
+            final Listener<?>[] updated = Arrays.stream(current).filter(l -> l != listener).toArray(Listener<?>[]::new);
+            if (updated.length == 0) {
+                copy.remove(type);
+            } else {
+                copy.put(type, updated);
+            }
+            listeners = copy;
+        }
+        return this;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (handle(ctx, msg)) {
+            super.channelRead(ctx, msg);
+        } else {
+            ReferenceCountUtil.release(msg);
+        }
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (handle(ctx, msg)) {
+            super.write(ctx, msg, promise);
+        } else {
+            ReferenceCountUtil.release(msg);
+            promise.trySuccess();
+        }
+    }
+
+    /**
+     * Passes the supplied message to the listeners of its packet wrapper type.
+     *
+     * @param ctx the channel handler context
+     * @param msg the message
+     * @return should the message be passed on?
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    protected boolean handle(ChannelHandlerContext ctx, Object msg) {
+        final Class<? extends Packet> type = registry.wrapperClass(msg.getClass());
+        if (type == null) {
+            return true;
+        }
+        final Listener[] typeListeners = listeners.get(type);
+        if (typeListeners == null) {
+            return true;
+        }
+        final Packet packet = registry.wrap(msg);
+        for (Listener listener : typeListeners) {
+            if (!listener.onPacket(ctx, packet)) {
+                return false;
+            }
+        }
+        // write back the fields modified by the listeners
+        packet.applyTo(msg, registry.version());
+        return true;
+    }
+
+    /**
+     * A typed packet listener.
+     *
+     * @param <T> the packet wrapper type
+     */
+    @FunctionalInterface
+    public interface Listener<T extends Packet> {
+        /**
+         * Handles a packet, the fields modified with the packet wrapper's setters are written back to the NMS packet.
+         *
+         * @param ctx the channel handler context
+         * @param packet the packet wrapper
+         * @return should the packet be passed on? false cancels the packet
+         */
+        boolean onPacket(ChannelHandlerContext ctx, T packet);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * This file is part of tinyprotocol2, licensed under the MIT License.
+ *
+ * Copyright (c) 2022 Matouš Kučera
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package {utilsPackage};
+
+import java.util.ArrayDeque;
+import java.util.function.Supplier;
+
+/**
+ * A thread-local pool of reusable packet wrapper instances.
+ * <p>
+ * Every thread (e.g. a Netty event loop) gets its own pool, so no synchronization is needed,
+ * but instances should be recycled on the thread that obtained them.
+ *
+ * @param <T> the packet wrapper type
+ */
+public final class Recycler<T extends Packet> {
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final Supplier<T> factory;
+    private final int capacity;
+    private final ThreadLocal<ArrayDeque<T>> pool = ThreadLocal.withInitial(ArrayDeque::new);
+
+    public Recycler(Supplier<T> factory) {
+        this(factory, DEFAULT_CAPACITY);
+    }
+
+    public Recycler(Supplier<T> factory, int capacity) {
+        this.factory = factory;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Takes an instance from the pool of the current thread, or creates a new one if the pool is empty.
+     *
+     * @return the packet wrapper instance
+     */
+    public T obtain() {
+        final T packet = pool.get().pollLast();
+        return packet != null ? packet : factory.get();
+    }
+
+    /**
+     * Resets the supplied instance and returns it to the pool of the current thread, it is dropped if the pool is full.
+     *
+     * @param packet the packet wrapper instance, must not be used after recycling
+     * @throws UnsupportedOperationException if the packet wrapper doesn't implement {@link Packet#reset()}
+     */
+    public void recycle(T packet) {
+        packet.reset();
+        final ArrayDeque<T> packets = pool.get();
+        if (packets.size() < capacity) {
+            packets.addLast(packet);
+        }
+    }
+}
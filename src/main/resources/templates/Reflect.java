@@ -28,7 +28,6 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
-import java.util.Arrays;
 
 public final class Reflect {
     public static final Object UNSAFE;
@@ -44,59 +43,38 @@ public final class Reflect {
         UNSAFE = unsafe0;
     }
 
+    // [class, memoized no-args instantiation strategy]
+    private static final ClassValue<Constructors.Instantiator> INSTANTIATORS = Constructors.instantiators(Reflect::allocator);
+
     private Reflect() {
     }
 
     public static Class<?> getClassSafe(String name) {
+        if (name == null) {
+            return null;
+        }
         try {
             return Class.forName(name);
-        } catch (Throwable ignored) {
+        } catch (Throwable e) {
+            failure(name, e);
         }
         return null;
     }
 
     public static Object construct(Class<?> clazz) {
         try {
-            final Constructor<?> c = clazz.getConstructor();
-            c.setAccessible(true);
-            return c.newInstance();
-        } catch (Throwable ignored) {
-            try {
-                return sun.reflect.ReflectionFactory.getReflectionFactory().newConstructorForSerialization(clazz, Object.class.getDeclaredConstructor()).newInstance();
-            } catch (Throwable ignored1) {
-                if (UNSAFE != null) {
-                    try {
-                        return ((sun.misc.Unsafe) UNSAFE).allocateInstance(clazz);
-                    } catch (Throwable ignored2) {
-                    }
-                }
-            }
+            return INSTANTIATORS.get(clazz).newInstance();
+        } catch (Throwable e) {
+            failure(clazz, e);
         }
         return null;
     }
 
     public static Object construct(Class<?> clazz, Object... args) {
-        final Class<?>[] argClasses = Arrays.stream(args)
-                .map(Object::getClass)
-                .toArray(Class[]::new);
-        Constructor<?> constructor = null;
         try {
-            constructor = clazz.getConstructor(argClasses);
-        } catch (Throwable ignored1) {
-            Class<?> clazz1 = clazz;
-            do {
-                try {
-                    constructor = clazz1.getDeclaredConstructor(argClasses);
-                } catch (Throwable ignored2) {
-                }
-            } while ((clazz1 = clazz1.getSuperclass()) != null && clazz1 != Object.class && constructor == null);
-        }
-        if (constructor == null) {
-            return null;
-        }
-        try {
-            return constructor.newInstance(args);
-        } catch (Throwable ignored) {
+            return (Object) Constructors.find(clazz, args).invokeExact(args);
+        } catch (Throwable e) {
+            failure(clazz, e);
         }
         return null;
     }
@@ -114,13 +92,17 @@ public final class Reflect {
                 }
             } while ((clazz1 = clazz1.getSuperclass()) != null && clazz1 != Object.class && method == null);
         }
+        if (method == null && name != null) {
+            failure(clazz.getName() + "#" + name, null);
+        }
         return method;
     }
 
     public static Object fastInvoke(Method method, Object instance, Object... args) {
         try {
             return method.invoke(instance, args);
-        } catch (Throwable ignored) {
+        } catch (Throwable e) {
+            failure(method, e);
         }
         return null;
     }
@@ -138,13 +120,27 @@ public final class Reflect {
                 }
             } while ((clazz1 = clazz1.getSuperclass()) != null && clazz1 != Object.class && field == null);
         }
+        if (field == null && name != null) {
+            failure(clazz.getName() + "#" + name, null);
+        }
         return field;
     }
 
     public static Object getField(Object instance, String name) {
         try {
             return getFieldSafe(instance.getClass(), name).get(instance);
-        } catch (Throwable ignored) {
+        } catch (Throwable e) {
+            failure(name, e);
+        }
+        return null;
+    }
+
+    public static Object getField(Field field, Object instance) {
+        try {
+            field.setAccessible(true);
+            return field.get(instance);
+        } catch (Throwable e) {
+            failure(field, e);
         }
         return null;
     }
@@ -166,16 +162,221 @@ public final class Reflect {
                         final Object ufo = instance != null ? instance : theUnsafe.staticFieldBase(field);
                         final long offset = instance != null ? theUnsafe.objectFieldOffset(field) : theUnsafe.staticFieldOffset(field);
 
-                        theUnsafe.putObject(ufo, offset, value);
-                    } catch (Throwable ignored1) {
+                        final Class<?> type = field.getType();
+                        // putObject on a primitive field would write the reference bits into it
+                        if (!type.isPrimitive()) {
+                            theUnsafe.putObject(ufo, offset, value);
+                        } else if (type == boolean.class) {
+                            theUnsafe.putBoolean(ufo, offset, (Boolean) value);
+                        } else if (type == byte.class) {
+                            theUnsafe.putByte(ufo, offset, (Byte) value);
+                        } else if (type == short.class) {
+                            theUnsafe.putShort(ufo, offset, (Short) value);
+                        } else if (type == char.class) {
+                            theUnsafe.putChar(ufo, offset, (Character) value);
+                        } else if (type == int.class) {
+                            theUnsafe.putInt(ufo, offset, (Integer) value);
+                        } else if (type == long.class) {
+                            theUnsafe.putLong(ufo, offset, (Long) value);
+                        } else if (type == float.class) {
+                            theUnsafe.putFloat(ufo, offset, (Float) value);
+                        } else if (type == double.class) {
+                            theUnsafe.putDouble(ufo, offset, (Double) value);
+                        }
+                    } catch (Throwable e) {
+                        failure(field, e);
                     }
+                } else {
+                    failure(field, ignored);
                 }
             }
         } else {
             try {
                 field.set(instance, value);
-            } catch (Throwable ignored) {
+            } catch (Throwable e) {
+                failure(field, e);
             }
         }
     }
+
+    public static boolean getBoolean(Field field, Object instance) {
+        try {
+            field.setAccessible(true);
+            return field.getBoolean(instance);
+        } catch (Throwable e) {
+            failure(field, e);
+        }
+        return false;
+    }
+
+    public static void setBoolean(Field field, Object instance, boolean value) {
+        try {
+            field.setAccessible(true);
+            field.setBoolean(instance, value);
+        } catch (Throwable ignored) {
+            // static final fields, boxes only on this slow path
+            setField(field, instance, value);
+        }
+    }
+
+    public static byte getByte(Field field, Object instance) {
+        try {
+            field.setAccessible(true);
+            return field.getByte(instance);
+        } catch (Throwable e) {
+            failure(field, e);
+        }
+        return 0;
+    }
+
+    public static void setByte(Field field, Object instance, byte value) {
+        try {
+            field.setAccessible(true);
+            field.setByte(instance, value);
+        } catch (Throwable ignored) {
+            // static final fields, boxes only on this slow path
+            setField(field, instance, value);
+        }
+    }
+
+    public static short getShort(Field field, Object instance) {
+        try {
+            field.setAccessible(true);
+            return field.getShort(instance);
+        } catch (Throwable e) {
+            failure(field, e);
+        }
+        return 0;
+    }
+
+    public static void setShort(Field field, Object instance, short value) {
+        try {
+            field.setAccessible(true);
+            field.setShort(instance, value);
+        } catch (Throwable ignored) {
+            // static final fields, boxes only on this slow path
+            setField(field, instance, value);
+        }
+    }
+
+    public static char getChar(Field field, Object instance) {
+        try {
+            field.setAccessible(true);
+            return field.getChar(instance);
+        } catch (Throwable e) {
+            failure(field, e);
+        }
+        return 0;
+    }
+
+    public static void setChar(Field field, Object instance, char value) {
+        try {
+            field.setAccessible(true);
+            field.setChar(instance, value);
+        } catch (Throwable ignored) {
+            // static final fields, boxes only on this slow path
+            setField(field, instance, value);
+        }
+    }
+
+    public static int getInt(Field field, Object instance) {
+        try {
+            field.setAccessible(true);
+            return field.getInt(instance);
+        } catch (Throwable e) {
+            failure(field, e);
+        }
+        return 0;
+    }
+
+    public static void setInt(Field field, Object instance, int value) {
+        try {
+            field.setAccessible(true);
+            field.setInt(instance, value);
+        } catch (Throwable ignored) {
+            // static final fields, boxes only on this slow path
+            setField(field, instance, value);
+        }
+    }
+
+    public static long getLong(Field field, Object instance) {
+        try {
+            field.setAccessible(true);
+            return field.getLong(instance);
+        } catch (Throwable e) {
+            failure(field, e);
+        }
+        return 0;
+    }
+
+    public static void setLong(Field field, Object instance, long value) {
+        try {
+            field.setAccessible(true);
+            field.setLong(instance, value);
+        } catch (Throwable ignored) {
+            // static final fields, boxes only on this slow path
+            setField(field, instance, value);
+        }
+    }
+
+    public static float getFloat(Field field, Object instance) {
+        try {
+            field.setAccessible(true);
+            return field.getFloat(instance);
+        } catch (Throwable e) {
+            failure(field, e);
+        }
+        return 0;
+    }
+
+    public static void setFloat(Field field, Object instance, float value) {
+        try {
+            field.setAccessible(true);
+            field.setFloat(instance, value);
+        } catch (Throwable ignored) {
+            // static final fields, boxes only on this slow path
+            setField(field, instance, value);
+        }
+    }
+
+    public static double getDouble(Field field, Object instance) {
+        try {
+            field.setAccessible(true);
+            return field.getDouble(instance);
+        } catch (Throwable e) {
+            failure(field, e);
+        }
+        return 0;
+    }
+
+    public static void setDouble(Field field, Object instance, double value) {
+        try {
+            field.setAccessible(true);
+            field.setDouble(instance, value);
+        } catch (Throwable ignored) {
+            // static final fields, boxes only on this slow path
+            setField(field, instance, value);
+        }
+    }
+
+    // null members are absent in the current version, not failures
+    private static void failure(Object member, Throwable cause) {
+        if (member != null) {
+            Metrics.reflectionFailure(member.toString(), cause);
+        }
+    }
+
+    // classes without a public no-args constructor, null if they can't be instantiated
+    private static Constructors.Instantiator allocator(Class<?> clazz) {
+        try {
+            final Constructor<?> c = sun.reflect.ReflectionFactory.getReflectionFactory().newConstructorForSerialization(clazz, Object.class.getDeclaredConstructor());
+            return c::newInstance;
+        } catch (Throwable ignored) {
+        }
+        if (UNSAFE != null) {
+            final sun.misc.Unsafe unsafe = (sun.misc.Unsafe) UNSAFE;
+            return () -> unsafe.allocateInstance(clazz);
+        }
+        return null;
+    }
 }
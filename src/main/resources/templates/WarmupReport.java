@@ -0,0 +1,85 @@
+/*
+ * This file is part of tinyprotocol2, licensed under the MIT License.
+ *
+ * Copyright (c) 2022 Matouš Kučera
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package {utilsPackage};
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The result of a packet wrapper warm-up, see {@code Packets#warmup(int)}.
+ */
+public final class WarmupReport {
+    private final int version;
+    private final Map<Class<? extends Packet>, List<String>> unresolved;
+    private final List<Class<? extends Packet>> unsupported;
+    private final long nanos;
+
+    public WarmupReport(int version, Map<Class<? extends Packet>, List<String>> unresolved, List<Class<? extends Packet>> unsupported, long nanos) {
+        this.version = version;
+        this.unresolved = unresolved;
+        this.unsupported = unsupported;
+        this.nanos = nanos;
+    }
+
+    public int version() {
+        return version;
+    }
+
+    /**
+     * Returns the NMS members that couldn't be resolved, by packet wrapper.
+     *
+     * @return the unresolved members
+     */
+    public Map<Class<? extends Packet>, List<String>> unresolved() {
+        return unresolved;
+    }
+
+    /**
+     * Returns the packet wrappers, whose packets don't exist in the warmed up version.
+     *
+     * @return the unsupported packet wrappers
+     */
+    public List<Class<? extends Packet>> unsupported() {
+        return unsupported;
+    }
+
+    public long nanos() {
+        return nanos;
+    }
+
+    /**
+     * Checks whether all members of the supported packet wrappers were resolved.
+     *
+     * @return were all members resolved?
+     */
+    public boolean isComplete() {
+        return unresolved.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "WarmupReport{version=" + version + ", unresolved=" + unresolved + ", unsupported=" + unsupported + ", nanos=" + nanos + "}";
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * This file is part of tinyprotocol2, licensed under the MIT License.
+ *
+ * Copyright (c) 2022 Matouš Kučera
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.kcra.tinyprotocol.templates;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * A stand-in for the generated packet registry, so the PacketHandler template can be tested on its own.
+ * The packet wrappers are registered by the tests, the generated registry is tested by {@code GeneratePacketsFunctionalTest}.
+ */
+public final class PacketRegistry {
+    private static final Map<Class<?>, Entry> ENTRIES = new ConcurrentHashMap<>();
+
+    private final int version;
+
+    private PacketRegistry(int version) {
+        this.version = version;
+    }
+
+    public static PacketRegistry forVersion(int ver) {
+        return new PacketRegistry(ver);
+    }
+
+    /**
+     * Registers a packet wrapper of the supplied NMS packet class.
+     *
+     * @param nmsClass the NMS packet class
+     * @param type the packet wrapper class
+     * @param factory the packet wrapper factory
+     * @param <T> the packet wrapper type
+     */
+    public static <T extends Packet> void register(Class<?> nmsClass, Class<T> type, Function<Object, T> factory) {
+        ENTRIES.put(nmsClass, new Entry(type, factory));
+    }
+
+    public Packet wrap(Object raw) {
+        final Entry entry = ENTRIES.get(raw.getClass());
+        return entry != null ? entry.factory.apply(raw) : null;
+    }
+
+    public Class<? extends Packet> wrapperClass(Class<?> nmsClass) {
+        final Entry entry = ENTRIES.get(nmsClass);
+        return entry != null ? entry.type : null;
+    }
+
+    public int version() {
+        return version;
+    }
+
+    private static final class Entry {
+        private final Class<? extends Packet> type;
+        private final Function<Object, ? extends Packet> factory;
+
+        private Entry(Class<? extends Packet> type, Function<Object, ? extends Packet> factory) {
+            this.type = type;
+            this.factory = factory;
+        }
+    }
+}
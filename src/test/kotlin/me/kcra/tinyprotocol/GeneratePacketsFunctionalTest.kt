@@ -0,0 +1,294 @@
+/*
+ * This file is part of tinyprotocol2, licensed under the MIT License.
+ *
+ * Copyright (c) 2022 Matouš Kučera
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.kcra.tinyprotocol
+
+import me.kcra.tinyprotocol.utils.ReflectType
+import org.gradle.testkit.runner.BuildResult
+import org.gradle.testkit.runner.GradleRunner
+import org.gradle.testkit.runner.TaskOutcome
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.io.TempDir
+import org.junit.jupiter.params.ParameterizedTest
+import org.junit.jupiter.params.provider.EnumSource
+import java.io.File
+
+/**
+ * Generates the packet wrappers of a small fake protocol, compiles them and converts fake NMS packets with them.
+ */
+class GeneratePacketsFunctionalTest {
+    @TempDir
+    lateinit var projectDir: File
+
+    @ParameterizedTest
+    @EnumSource(ReflectType::class)
+    fun `converts packets with the generated wrappers`(reflectType: ReflectType) {
+        verify(reflectType, specializeVersions = false)
+    }
+
+    @ParameterizedTest
+    @EnumSource(ReflectType::class)
+    fun `converts packets with the specialized wrappers`(reflectType: ReflectType) {
+        verify(reflectType, specializeVersions = true)
+    }
+
+    private fun verify(reflectType: ReflectType, specializeVersions: Boolean) {
+        writeProject(reflectType, specializeVersions)
+
+        val result: BuildResult = GradleRunner.create()
+            .withProjectDir(projectDir)
+            .withPluginClasspath()
+            .withArguments("verifyPackets", "--stacktrace")
+            .build()
+        assertEquals(TaskOutcome.SUCCESS, result.task(":generatePackets")?.outcome)
+        assertEquals(TaskOutcome.SUCCESS, result.task(":verifyPackets")?.outcome)
+        assertTrue(projectDir.resolve("src/generated/java/functional/utils").isDirectory)
+        assertTrue(result.output.contains("verified protocol versions 757, 758"), result.output)
+    }
+
+    private fun writeProject(reflectType: ReflectType, specializeVersions: Boolean) {
+        write("settings.gradle.kts", "rootProject.name = \"functional\"\n")
+        // the wrappers are generated into the default "generated" source set, the verifier uses them from the main one
+        val dependencies: List<String> = when (reflectType) {
+            ReflectType.NARCISSUS -> listOf("io.github.toolfactory:narcissus:1.0.7")
+            ReflectType.OBJENESIS -> listOf("org.objenesis:objenesis:3.2")
+            else -> listOf()
+        }.flatMap { listOf("implementation(\"$it\")", "\"generatedImplementation\"(\"$it\")") } + "implementation(sourceSets[\"generated\"].output)"
+        // local mappings and explicit protocol versions, nothing is downloaded but the Reflect dependencies
+        write(
+            "build.gradle.kts",
+            """
+            import me.kcra.tinyprotocol.utils.ReflectType
+
+            plugins {
+                java
+                id("me.kcra.tinyprotocol")
+            }
+
+            repositories {
+                mavenCentral()
+            }
+
+            dependencies {
+                ${dependencies.joinToString("\n" + " ".repeat(16))}
+            }
+
+            protocol {
+                version("1.18", 757)
+                version("1.18.2", 758)
+                mappings("1.18", file("mappings/1.18.txt"))
+                mappings("1.18.2", file("mappings/1.18.2.txt"))
+                packet(
+                    "net/minecraft/network/protocol/game/ClientboundSetTimePacket",
+                    "net/minecraft/network/protocol/game/ClientboundSetSimulationDistancePacket"
+                )
+                utilsPackageName = "functional.utils"
+                specializeVersions = $specializeVersions
+                reflect {
+                    type = ReflectType.$reflectType
+                }
+            }
+
+            tasks.register<JavaExec>("verifyPackets") {
+                classpath = sourceSets.main.get().runtimeClasspath
+                mainClass.set("functional.Verifier")
+            }
+            """.trimIndent()
+        )
+        // the simulation distance packet and the daylight cycle field are only available in 1.18.2,
+        // the time packet is obfuscated differently per version
+        write(
+            "mappings/1.18.txt",
+            """
+            net.minecraft.network.FriendlyByteBuf -> nms.FriendlyByteBuf:
+            net.minecraft.network.protocol.Packet -> nms.Packet:
+                void write(net.minecraft.network.FriendlyByteBuf) -> a
+            net.minecraft.network.protocol.game.ClientboundSetTimePacket -> nms.v757.TimePacket:
+                long gameTime -> a
+                long dayTime -> b
+            """.trimIndent()
+        )
+        write(
+            "mappings/1.18.2.txt",
+            """
+            net.minecraft.network.FriendlyByteBuf -> nms.FriendlyByteBuf:
+            net.minecraft.network.protocol.Packet -> nms.Packet:
+                void write(net.minecraft.network.FriendlyByteBuf) -> a
+            net.minecraft.network.protocol.game.ClientboundSetTimePacket -> nms.v758.TimePacket:
+                long gameTime -> b
+                long dayTime -> a
+                boolean doDaylightCycle -> c
+            net.minecraft.network.protocol.game.ClientboundSetSimulationDistancePacket -> nms.v758.DistancePacket:
+                int simulationDistance -> a
+            """.trimIndent()
+        )
+        write("src/main/java/nms/FriendlyByteBuf.java", "package nms;\n\npublic class FriendlyByteBuf {\n}\n")
+        write("src/main/java/nms/Packet.java", "package nms;\n\npublic interface Packet {\n    void a(FriendlyByteBuf buf);\n}\n")
+        write(
+            "src/main/java/nms/v757/TimePacket.java",
+            """
+            package nms.v757;
+
+            public class TimePacket implements nms.Packet {
+                private final long a;
+                private final long b;
+
+                public TimePacket(long a, long b) {
+                    this.a = a;
+                    this.b = b;
+                }
+
+                public void a(nms.FriendlyByteBuf buf) {
+                }
+
+                @Override
+                public String toString() {
+                    return "TimePacket[" + a + "," + b + "]";
+                }
+            }
+            """.trimIndent()
+        )
+        write(
+            "src/main/java/nms/v758/TimePacket.java",
+            """
+            package nms.v758;
+
+            public class TimePacket implements nms.Packet {
+                private final long a;
+                private final long b;
+                private boolean c;
+
+                public TimePacket(long a, long b) {
+                    this.a = a;
+                    this.b = b;
+                }
+
+                public void a(nms.FriendlyByteBuf buf) {
+                }
+
+                @Override
+                public String toString() {
+                    return "TimePacket[" + b + "," + a + "," + c + "]";
+                }
+            }
+            """.trimIndent()
+        )
+        write(
+            "src/main/java/nms/v758/DistancePacket.java",
+            """
+            package nms.v758;
+
+            public class DistancePacket implements nms.Packet {
+                private int a;
+
+                public void a(nms.FriendlyByteBuf buf) {
+                }
+
+                @Override
+                public String toString() {
+                    return "DistancePacket[" + a + "]";
+                }
+            }
+            """.trimIndent()
+        )
+        write(
+            "src/main/java/functional/Verifier.java",
+            """
+            package functional;
+
+            import functional.utils.Packet;
+            import functional.utils.PacketRegistry;
+            import functional.utils.Packets;
+            import functional.utils.WarmupReport;
+            import net.minecraft.network.protocol.game.ClientboundSetSimulationDistancePacket;
+            import net.minecraft.network.protocol.game.ClientboundSetTimePacket;
+
+            import java.util.Arrays;
+
+            public class Verifier {
+                public static void main(String[] args) {
+                    // 1.18 doesn't have the simulation distance packet, its registry only wraps the time packet
+                    final WarmupReport report = Packets.warmup(757);
+                    check(report.unresolved().isEmpty(), "unresolved members: " + report.unresolved());
+                    check(report.unsupported().equals(Arrays.asList(ClientboundSetSimulationDistancePacket.class)), "unsupported packets: " + report.unsupported());
+                    final PacketRegistry registry757 = PacketRegistry.forVersion(757);
+                    check(registry757.isRegistered(nms.v757.TimePacket.class), "1.18 time packet not registered");
+                    check(!registry757.isRegistered(nms.v758.DistancePacket.class), "1.18.2 distance packet registered in 1.18");
+
+                    final Object time757 = new ClientboundSetTimePacket(10L, 20L, false).toNMS(757);
+                    check("TimePacket[10,20]".equals(String.valueOf(time757)) && time757 instanceof nms.v757.TimePacket, "1.18 toNMS: " + time757);
+                    final ClientboundSetTimePacket wrapped757 = (ClientboundSetTimePacket) registry757.wrap(time757);
+                    check(wrapped757.gameTime() == 10L && wrapped757.dayTime() == 20L, "1.18 wrap");
+
+                    final PacketRegistry registry758 = PacketRegistry.forVersion(758);
+                    final Object time758 = new ClientboundSetTimePacket(30L, 40L, true).toNMS(758);
+                    check("TimePacket[30,40,true]".equals(String.valueOf(time758)) && time758 instanceof nms.v758.TimePacket, "1.18.2 toNMS: " + time758);
+                    final Object distance758 = new ClientboundSetSimulationDistancePacket(12).toNMS(758);
+                    check("DistancePacket[12]".equals(String.valueOf(distance758)), "1.18.2 toNMS: " + distance758);
+                    check(registry758.wrapperClass(nms.v758.DistancePacket.class) == ClientboundSetSimulationDistancePacket.class, "1.18.2 distance packet not registered");
+
+                    final ClientboundSetTimePacket fromNMS = new ClientboundSetTimePacket(time758, 758);
+                    check(fromNMS.gameTime() == 30L && fromNMS.dayTime() == 40L && fromNMS.doDaylightCycle(), "1.18.2 fromNMS");
+
+                    // the batches keep the order of mixed packet types
+                    final Packet[] packets = Packets.fromNMS(Arrays.asList(time758, distance758, "unregistered", time758), 758);
+                    check(packets[0] instanceof ClientboundSetTimePacket && packets[1] instanceof ClientboundSetSimulationDistancePacket
+                            && packets[2] == null && packets[3] instanceof ClientboundSetTimePacket, "1.18.2 batch fromNMS: " + Arrays.toString(packets));
+                    check(((ClientboundSetSimulationDistancePacket) packets[1]).simulationDistance() == 12, "1.18.2 batch fromNMS values");
+                    final Object[] raws = Packets.toNMS(Arrays.asList(packets[1], packets[0], packets[1]), 758);
+                    check(Arrays.toString(raws).equals("[DistancePacket[12], TimePacket[30,40,true], DistancePacket[12]]"), "1.18.2 batch toNMS: " + Arrays.toString(raws));
+
+                    // applyTo only writes the modified fields, the ones missing in 1.18 stay modified until applied to 1.18.2
+                    final ClientboundSetTimePacket modified = new ClientboundSetTimePacket(time757, 757);
+                    modified.dayTime(25L);
+                    modified.doDaylightCycle(false);
+                    modified.applyTo(time757, 757);
+                    check("TimePacket[10,25]".equals(String.valueOf(time757)), "1.18 applyTo: " + time757);
+                    modified.applyTo(time758, 758);
+                    check("TimePacket[30,40,false]".equals(String.valueOf(time758)), "1.18.2 applyTo: " + time758);
+                    try {
+                        modified.applyTo(time758, 757);
+                        throw new AssertionError("1.18 applyTo accepted a 1.18.2 packet");
+                    } catch (IllegalArgumentException expected) {
+                        // the NMS packet class doesn't match
+                    }
+
+                    System.out.println("verified protocol versions 757, 758");
+                }
+
+                private static void check(boolean condition, String message) {
+                    if (!condition) {
+                        throw new AssertionError(message);
+                    }
+                }
+            }
+            """.trimIndent()
+        )
+    }
+
+    private fun write(path: String, content: String) {
+        File(projectDir, path).also { it.parentFile?.mkdirs() }.writeText(content)
+    }
+}
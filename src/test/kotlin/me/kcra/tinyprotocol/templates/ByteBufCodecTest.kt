@@ -0,0 +1,110 @@
+/*
+ * This file is part of tinyprotocol2, licensed under the MIT License.
+ *
+ * Copyright (c) 2022 Matouš Kučera
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.kcra.tinyprotocol.templates
+
+import io.netty.buffer.ByteBuf
+import io.netty.buffer.Unpooled
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import java.util.UUID
+
+class ByteBufCodecTest {
+    private val buf: ByteBuf = Unpooled.buffer()
+
+    @AfterEach
+    fun release() {
+        buf.release()
+    }
+
+    @Test
+    fun `round-trips VarInts`() {
+        // value -> encoded size
+        mapOf(0 to 1, 1 to 1, 127 to 1, 128 to 2, 25565 to 3, 2097151 to 3, 2097152 to 4, Int.MAX_VALUE to 5, -1 to 5, Int.MIN_VALUE to 5)
+            .forEach { (value, size) ->
+                buf.clear()
+                ByteBufCodec.writeVarInt(buf, value)
+                assertEquals(size, buf.readableBytes(), "encoded size of $value")
+                assertEquals(value, ByteBufCodec.readVarInt(buf))
+            }
+    }
+
+    @Test
+    fun `encodes VarInts like the vanilla protocol`() {
+        ByteBufCodec.writeVarInt(buf, 25565)
+        assertEquals(listOf(0xdd, 0xc7, 0x01), (0 until buf.readableBytes()).map { buf.getUnsignedByte(it).toInt() })
+    }
+
+    @Test
+    fun `rejects VarInts longer than 5 bytes`() {
+        repeat(5) { buf.writeByte(0x80) }
+        buf.writeByte(0x01)
+        assertThrows<IllegalArgumentException> { ByteBufCodec.readVarInt(buf) }
+    }
+
+    @Test
+    fun `round-trips VarLongs`() {
+        mapOf(0L to 1, 127L to 1, 128L to 2, Int.MAX_VALUE.toLong() to 5, Long.MAX_VALUE to 9, -1L to 10, Long.MIN_VALUE to 10)
+            .forEach { (value, size) ->
+                buf.clear()
+                ByteBufCodec.writeVarLong(buf, value)
+                assertEquals(size, buf.readableBytes(), "encoded size of $value")
+                assertEquals(value, ByteBufCodec.readVarLong(buf))
+            }
+    }
+
+    @Test
+    fun `round-trips strings`() {
+        listOf("", "hello", "héllo", "☃ snowman", "😀").forEach { value ->
+            buf.clear()
+            ByteBufCodec.writeString(buf, value, 16)
+            assertEquals(value, ByteBufCodec.readString(buf, 16))
+            assertEquals(0, buf.readableBytes())
+        }
+    }
+
+    @Test
+    fun `prefixes strings with their encoded length`() {
+        ByteBufCodec.writeString(buf, "héllo", 16)
+        assertEquals(6, ByteBufCodec.readVarInt(buf))
+        assertEquals(6, buf.readableBytes())
+    }
+
+    @Test
+    fun `rejects strings longer than the maximum length`() {
+        assertThrows<IllegalArgumentException> { ByteBufCodec.writeString(buf, "too long", 4) }
+        ByteBufCodec.writeString(buf, "too long", 16)
+        assertThrows<IllegalArgumentException> { ByteBufCodec.readString(buf, 4) }
+    }
+
+    @Test
+    fun `round-trips UUIDs`() {
+        val value: UUID = UUID.randomUUID()
+        ByteBufCodec.writeUUID(buf, value)
+        assertEquals(16, buf.readableBytes())
+        assertEquals(value, ByteBufCodec.readUUID(buf))
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * This file is part of tinyprotocol2, licensed under the MIT License.
+ *
+ * Copyright (c) 2022 Matouš Kučera
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.kcra.tinyprotocol.templates
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+
+class MappingUtilsTest {
+    @Test
+    fun `finds mappings in an unsorted table`() {
+        val table: MappingUtils.MappingTable = MappingUtils.unwrapMappings("a=5,1+b=4,2+c=3")
+        assertEquals("a", MappingUtils.findMapping(table, 1))
+        assertEquals("b", MappingUtils.findMapping(table, 2))
+        assertEquals("c", MappingUtils.findMapping(table, 3))
+        assertEquals("b", MappingUtils.findMapping(table, 4))
+        assertEquals("a", MappingUtils.findMapping(table, 5))
+    }
+
+    @Test
+    fun `returns null for versions outside of the table`() {
+        val table: MappingUtils.MappingTable = MappingUtils.unwrapMappings("a=10,20+b=30")
+        assertNull(MappingUtils.findMapping(table, 9))
+        assertNull(MappingUtils.findMapping(table, 15))
+        assertNull(MappingUtils.findMapping(table, 31))
+    }
+
+    @Test
+    fun `grows past the initial table capacity`() {
+        val mapping: String = (1..20).joinToString("+") { "m$it=$it" }
+        (1..20).forEach { assertEquals("m$it", MappingUtils.findMapping(mapping, it)) }
+    }
+
+    @Test
+    fun `converts internal names to binary names`() {
+        assertEquals("net.minecraft.network.protocol.Packet", MappingUtils.findMapping("net/minecraft/network/protocol/Packet=757", 757))
+    }
+
+    @Test
+    fun `caches tables by the mapping string`() {
+        val mapping = "a=1,2"
+        assertSame(MappingUtils.unwrapMappings(mapping), MappingUtils.unwrapMappings(String(mapping.toCharArray())))
+    }
+
+    @Test
+    fun `rejects malformed mapping strings`() {
+        assertThrows<IllegalArgumentException> { MappingUtils.unwrapMappings("malformed") }
+    }
+
+    @Test
+    fun `rejects entries without a version`() {
+        assertThrows<IllegalArgumentException> { MappingUtils.unwrapMappings("a=") }
+        assertThrows<IllegalArgumentException> { MappingUtils.unwrapMappings("a=1,+b=2") }
+        assertThrows<IllegalArgumentException> { MappingUtils.unwrapMappings("a=1+b=x") }
+    }
+
+    @Test
+    @Suppress("DEPRECATION")
+    fun `adapts the table to the deprecated map format`() {
+        assertEquals(mapOf("a" to listOf(1, 3), "b" to listOf(2)), MappingUtils.unwrapMappings("", "a=3,1+b=2"))
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * This file is part of tinyprotocol2, licensed under the MIT License.
+ *
+ * Copyright (c) 2022 Matouš Kučera
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.kcra.tinyprotocol.templates
+
+import io.netty.channel.ChannelFuture
+import io.netty.channel.embedded.EmbeddedChannel
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.BeforeAll
+import org.junit.jupiter.api.Test
+
+class PacketHandlerTest {
+    private val handler = PacketHandler(757)
+    private val channel = EmbeddedChannel(handler)
+
+    @AfterEach
+    fun close() {
+        channel.finishAndReleaseAll()
+    }
+
+    @Test
+    fun `releases cancelled inbound packets`() {
+        handler.listen(TestPacket::class.java) { _, _ -> false }
+        val raw = RawTestPacket(1)
+        assertFalse(channel.writeInbound(raw))
+        assertNull(channel.readInbound<Any>())
+        assertEquals(0, raw.refCnt())
+    }
+
+    @Test
+    fun `releases cancelled outbound packets and completes their promise`() {
+        handler.listen(TestPacket::class.java) { _, _ -> false }
+        val raw = RawTestPacket(1)
+        val future: ChannelFuture = channel.writeAndFlush(raw)
+        assertTrue(future.isSuccess)
+        assertNull(channel.readOutbound<Any>())
+        assertEquals(0, raw.refCnt())
+    }
+
+    @Test
+    fun `writes back the fields modified by the listeners`() {
+        handler.listen(TestPacket::class.java) { _, packet -> packet.value++; true }
+            .listen(TestPacket::class.java) { _, packet -> packet.value *= 10; true }
+        val raw = RawTestPacket(1)
+        assertTrue(channel.writeInbound(raw))
+        assertSame(raw, channel.readInbound<Any>())
+        assertEquals(20, raw.value)
+        assertEquals(1, raw.refCnt())
+    }
+
+    @Test
+    fun `stops at the first cancelling listener`() {
+        var called = false
+        handler.listen(TestPacket::class.java) { _, _ -> false }
+            .listen(TestPacket::class.java) { _, _ -> called = true; true }
+        assertFalse(channel.writeInbound(RawTestPacket(1)))
+        assertFalse(called)
+    }
+
+    @Test
+    fun `passes through packets without listeners`() {
+        val listener = PacketHandler.Listener<TestPacket> { _, _ -> false }
+        handler.listen(TestPacket::class.java, listener).unlisten(TestPacket::class.java, listener)
+        val raw = RawTestPacket(1)
+        assertTrue(channel.writeInbound(raw, "not a packet"))
+        assertSame(raw, channel.readInbound<Any>())
+        assertEquals("not a packet", channel.readInbound<Any>())
+        assertEquals(1, raw.refCnt())
+    }
+
+    companion object {
+        @JvmStatic
+        @BeforeAll
+        fun register() {
+            PacketRegistry.register(RawTestPacket::class.java, TestPacket::class.java) { raw -> TestPacket().also { it.fromNMS(raw, 757) } }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * This file is part of tinyprotocol2, licensed under the MIT License.
+ *
+ * Copyright (c) 2022 Matouš Kučera
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.kcra.tinyprotocol.templates
+
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+
+class PacketTest {
+    // implements only the abstract methods, like a hand-written wrapper predating the optional ones
+    private val packet: Packet = object : Packet {
+        override fun fromNMS(raw: Any, ver: Int) = Unit
+
+        override fun toNMS(ver: Int): Any = RawTestPacket(0)
+
+        override fun read(buf: Any, ver: Int) = Unit
+
+        override fun write(buf: Any, ver: Int) = Unit
+    }
+
+    @Test
+    fun `rejects applyTo without an implementation`() {
+        assertThrows<UnsupportedOperationException> { packet.applyTo(RawTestPacket(0), 757) }
+    }
+
+    @Test
+    fun `rejects reset without an implementation`() {
+        assertThrows<UnsupportedOperationException> { packet.reset() }
+    }
+}
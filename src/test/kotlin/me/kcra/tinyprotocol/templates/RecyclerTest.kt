@@ -0,0 +1,72 @@
+/*
+ * This file is part of tinyprotocol2, licensed under the MIT License.
+ *
+ * Copyright (c) 2022 Matouš Kučera
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.kcra.tinyprotocol.templates
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.util.Collections
+import java.util.IdentityHashMap
+
+class RecyclerTest {
+    @Test
+    fun `reuses recycled instances`() {
+        val recycler: Recycler<TestPacket> = Recycler(::TestPacket)
+        val packet: TestPacket = recycler.obtain().also { it.value = 5 }
+        recycler.recycle(packet)
+        assertEquals(1, packet.resets)
+        assertEquals(0, packet.value)
+        assertSame(packet, recycler.obtain())
+    }
+
+    @Test
+    fun `drops instances over the capacity`() {
+        var created = 0
+        val recycler: Recycler<TestPacket> = Recycler({ created++; TestPacket() }, 2)
+        val packets: List<TestPacket> = List(3) { recycler.obtain() }
+        packets.forEach(recycler::recycle)
+        // every recycled instance is reset, but only the first two are pooled
+        assertTrue(packets.all { it.resets == 1 })
+        val pooled: MutableSet<TestPacket> = Collections.newSetFromMap(IdentityHashMap())
+        repeat(2) { pooled.add(recycler.obtain()) }
+        assertEquals(setOf(packets[0], packets[1]), pooled)
+        assertEquals(3, created)
+        assertFalse(recycler.obtain() === packets[2])
+        assertEquals(4, created)
+    }
+
+    @Test
+    fun `pools instances per thread`() {
+        val recycler: Recycler<TestPacket> = Recycler(::TestPacket)
+        val packet: TestPacket = recycler.obtain()
+        recycler.recycle(packet)
+        var other: TestPacket? = null
+        Thread { other = recycler.obtain() }.apply { start() }.join()
+        assertFalse(other === packet)
+        assertSame(packet, recycler.obtain())
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * This file is part of tinyprotocol2, licensed under the MIT License.
+ *
+ * Copyright (c) 2022 Matouš Kučera
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.kcra.tinyprotocol.templates
+
+/**
+ * A packet wrapper of a [RawTestPacket], counts the resets.
+ */
+class TestPacket : Packet {
+    var value: Int = 0
+    var resets: Int = 0
+
+    override fun fromNMS(raw: Any, ver: Int) {
+        value = (raw as RawTestPacket).value
+    }
+
+    override fun toNMS(ver: Int): Any = RawTestPacket(value)
+
+    override fun applyTo(raw: Any, ver: Int) {
+        (raw as RawTestPacket).value = value
+    }
+
+    override fun read(buf: Any, ver: Int) = throw UnsupportedOperationException()
+
+    override fun write(buf: Any, ver: Int) = throw UnsupportedOperationException()
+
+    override fun reset() {
+        value = 0
+        resets++
+    }
+}